@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import com.github.kenshin579.kafka.connect.transform.changecase.ConvertCase;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.apache.kafka.connect.transforms.Cast;
+import org.apache.kafka.connect.transforms.Flatten;
+import org.apache.kafka.connect.transforms.ReplaceField;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same snake_case to camelCase rename done by ConvertCase and by the equivalent chain of Apache Kafka SMTs
+ * from connect-transforms, on identical records. Setup checks that both chains produce the same field names.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ComparisonBenchmark {
+    public enum Scenario {
+        /*
+            ConvertCase versus ReplaceField with a rename list
+         */
+        FLAT(RecordShape.WIDE),
+        /*
+            ConvertCase then Flatten versus Flatten then ReplaceField on the flattened names
+         */
+        NESTED(RecordShape.DEEP),
+        /*
+            FLAT followed by a Cast of every int32 field to int64 in both chains
+         */
+        FLAT_CAST(RecordShape.WIDE);
+
+        private final RecordShape shape;
+
+        Scenario(RecordShape shape) {
+            this.shape = shape;
+        }
+    }
+
+    @Param({"FLAT", "NESTED", "FLAT_CAST"})
+    public Scenario scenario;
+
+    @Param({"SCHEMA", "SCHEMALESS"})
+    public RecordMode mode;
+
+    private SinkRecord record;
+    private List<Transformation<SinkRecord>> convertCaseChain;
+    private List<Transformation<SinkRecord>> kafkaChain;
+
+    @Setup
+    public void setup() {
+        final Schema schema = scenario.shape.schema(NameStyle.SNAKE_UNDERSCORE, "Record");
+        record = mode.record("benchmark", "key", schema, 1);
+
+        final Schema flattened = flattenedSchema(schema);
+        final List<String> renames = new ArrayList<>();
+        final List<String> casts = new ArrayList<>();
+        for (Field field : flattened.fields()) {
+            final String updatedName = camel(field.name());
+            renames.add(field.name() + ":" + updatedName);
+            if (field.schema().type() == Schema.Type.INT32) {
+                casts.add(updatedName + ":int64");
+            }
+        }
+
+        convertCaseChain = new ArrayList<>();
+        kafkaChain = new ArrayList<>();
+        convertCaseChain.add(configure(new ConvertCase.Value<>(), "convert.from.to", "snakeunderscore2camel"));
+        if (scenario == Scenario.NESTED) {
+            convertCaseChain.add(configure(new Flatten.Value<>(), "delimiter", "."));
+            kafkaChain.add(configure(new Flatten.Value<>(), "delimiter", "."));
+        }
+        kafkaChain.add(configure(new ReplaceField.Value<>(), "renames", String.join(",", renames)));
+        if (scenario == Scenario.FLAT_CAST) {
+            convertCaseChain.add(configure(new Cast.Value<>(), "spec", String.join(",", casts)));
+            kafkaChain.add(configure(new Cast.Value<>(), "spec", String.join(",", casts)));
+        }
+
+        final Object convertCaseNames = fieldNames(apply(convertCaseChain).value());
+        final Object kafkaNames = fieldNames(apply(kafkaChain).value());
+        if (!convertCaseNames.equals(kafkaNames)) {
+            throw new IllegalStateException("Chains disagree: " + convertCaseNames + " versus " + kafkaNames);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        convertCaseChain.forEach(Transformation::close);
+        kafkaChain.forEach(Transformation::close);
+    }
+
+    @Benchmark
+    public SinkRecord convertCase() {
+        return apply(convertCaseChain);
+    }
+
+    @Benchmark
+    public SinkRecord kafkaSmts() {
+        return apply(kafkaChain);
+    }
+
+    private SinkRecord apply(List<Transformation<SinkRecord>> chain) {
+        SinkRecord updatedRecord = record;
+        for (int i = 0; i < chain.size(); i++) {
+            updatedRecord = chain.get(i).apply(updatedRecord);
+        }
+        return updatedRecord;
+    }
+
+    private static Transformation<SinkRecord> configure(Transformation<SinkRecord> transform, String name, String value) {
+        transform.configure(Collections.singletonMap(name, value));
+        return transform;
+    }
+
+    /*
+        Field names of the schema after Flatten, which is the identity on flat schemas
+     */
+    private static Schema flattenedSchema(Schema schema) {
+        final Flatten<SinkRecord> flatten = new Flatten.Value<>();
+        flatten.configure(Collections.singletonMap("delimiter", "."));
+        final Schema flattened = flatten.apply(new SinkRecord("benchmark", 0, null, null, schema, RecordShape.value(schema, 1), 0)).valueSchema();
+        flatten.close();
+        return flattened;
+    }
+
+    private static String camel(String path) {
+        final StringBuilder name = new StringBuilder();
+        boolean upper = false;
+        for (char c : path.toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                name.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return name.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object fieldNames(Object value) {
+        if (value instanceof Struct) {
+            final List<String> names = new ArrayList<>();
+            for (Field field : ((Struct) value).schema().fields()) {
+                names.add(field.name());
+            }
+            return new TreeSet<>(names);
+        }
+        return new TreeSet<>(new HashMap<>((Map<String, Object>) value).keySet());
+    }
+}
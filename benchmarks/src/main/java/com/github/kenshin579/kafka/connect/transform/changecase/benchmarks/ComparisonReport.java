@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs {@link ComparisonBenchmark} with the GC profiler and prints a Markdown table comparing
+ * ConvertCase with the Apache Kafka SMT chain for every scenario. Takes the usual JMH options.
+ */
+public final class ComparisonReport {
+    private ComparisonReport() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        final Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(ComparisonBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .verbosity(VerboseMode.SILENT)
+                .build()).run();
+
+        final Map<String, double[]> rows = new TreeMap<>();
+        for (RunResult result : results) {
+            final String scenario = result.getParams().getParam("scenario") + " | " + result.getParams().getParam("mode");
+            final int column = result.getParams().getBenchmark().endsWith(".convertCase") ? 0 : 1;
+            final double[] row = rows.computeIfAbsent(scenario, k -> new double[4]);
+            row[column] = result.getPrimaryResult().getScore();
+            row[2 + column] = allocatedBytes(result);
+        }
+
+        System.out.println("| Scenario | Mode | ConvertCase ops/s | Kafka SMTs ops/s | Speedup | ConvertCase B/op | Kafka SMTs B/op |");
+        System.out.println("|---|---|---:|---:|---:|---:|---:|");
+        for (Map.Entry<String, double[]> row : rows.entrySet()) {
+            final double[] values = row.getValue();
+            System.out.printf("| %s | %,.0f | %,.0f | %.2fx | %,.0f | %,.0f |%n", row.getKey(),
+                    values[0], values[1], values[1] == 0 ? 0.0 : values[0] / values[1], values[2], values[3]);
+        }
+    }
+
+    private static double allocatedBytes(RunResult result) {
+        // JMH declares the secondary results with the raw Result type
+        for (Map.Entry<String, ?> secondary : result.getSecondaryResults().entrySet()) {
+            if (secondary.getKey().endsWith("gc.alloc.rate.norm")) {
+                return ((Result<?>) secondary.getValue()).getScore();
+            }
+        }
+        return Double.NaN;
+    }
+}
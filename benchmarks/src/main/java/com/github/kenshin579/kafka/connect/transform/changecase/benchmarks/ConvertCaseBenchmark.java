@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import com.github.kenshin579.kafka.connect.transform.changecase.ConvertCase;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConvertCase.Value for every case type, record shape and mode. warmCache converts the same schema over and over,
+ * coldCache rotates through more schemas than the schema cache holds so every record compiles its schema.
+ * Schemaless records have no schema to cache, so both benchmarks measure the same work in that mode.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConvertCaseBenchmark {
+    /*
+        Four times the default schema cache size
+     */
+    static final int COLD_SCHEMAS = 64;
+
+    @Param({"uppercase", "lowercase", "snakehyphen2camel", "snakeunderscore2camel", "camel2snakehyphen", "camel2snakeunderscore"})
+    public String convertFromTo;
+
+    @Param({"WIDE", "DEEP", "REPEATED_ARRAY"})
+    public RecordShape shape;
+
+    @Param({"SCHEMA", "SCHEMALESS"})
+    public RecordMode mode;
+
+    private ConvertCase<SinkRecord> transform;
+    private SinkRecord[] records;
+    private int next;
+
+    @Setup
+    public void setup() {
+        transform = new ConvertCase.Value<>();
+        transform.configure(Collections.singletonMap("convert.from.to", convertFromTo));
+
+        final NameStyle style = NameStyle.sourceOf(convertFromTo);
+        records = new SinkRecord[COLD_SCHEMAS];
+        for (int i = 0; i < COLD_SCHEMAS; i++) {
+            records[i] = mode.record("benchmark", "key-" + i, shape.schema(style, "Record" + i), i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        transform.close();
+    }
+
+    @Benchmark
+    public SinkRecord warmCache() {
+        return transform.apply(records[0]);
+    }
+
+    @Benchmark
+    public SinkRecord coldCache() {
+        final SinkRecord record = records[next];
+        next = (next + 1) % COLD_SCHEMAS;
+        return transform.apply(record);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import com.github.kenshin579.kafka.connect.transform.changecase.ConvertCase;
+import com.github.kenshin579.kafka.connect.transform.changecase.ConvertCaseKeyToValue;
+import com.github.kenshin579.kafka.connect.transform.changecase.KeyToValue;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fused ConvertCaseKeyToValue against the chain of KeyToValue and ConvertCase.Value it replaces.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConvertCaseKeyToValueBenchmark {
+    @Param({"WIDE", "DEEP", "REPEATED_ARRAY"})
+    public RecordShape shape;
+
+    @Param({"SCHEMA", "SCHEMALESS"})
+    public RecordMode mode;
+
+    private KeyToValue<SinkRecord> keyToValue;
+    private ConvertCase<SinkRecord> convertCase;
+    private ConvertCaseKeyToValue<SinkRecord> fused;
+    private SinkRecord record;
+
+    @Setup
+    public void setup() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("key.field.name", "record_key");
+
+        keyToValue = new KeyToValue<>();
+        keyToValue.configure(props);
+        convertCase = new ConvertCase.Value<>();
+        convertCase.configure(props);
+        fused = new ConvertCaseKeyToValue<>();
+        fused.configure(props);
+
+        record = mode.record("benchmark", "key", shape.schema(NameStyle.SNAKE_UNDERSCORE, "Record"), 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        keyToValue.close();
+        convertCase.close();
+        fused.close();
+    }
+
+    @Benchmark
+    public SinkRecord chain() {
+        return convertCase.apply(keyToValue.apply(record));
+    }
+
+    @Benchmark
+    public SinkRecord fused() {
+        return fused.apply(record);
+    }
+}
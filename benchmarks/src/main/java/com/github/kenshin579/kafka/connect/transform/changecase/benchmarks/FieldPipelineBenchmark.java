@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import com.github.kenshin579.kafka.connect.transform.changecase.ConvertCase;
+import com.github.kenshin579.kafka.connect.transform.changecase.FieldPipeline;
+import com.github.kenshin579.kafka.connect.transform.changecase.KeyToValue;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.apache.kafka.connect.transforms.ReplaceField;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FieldPipeline against the chain of single purpose transforms it replaces: drop ten fields, insert the key,
+ * convert snake_case to camelCase, rename one field and prefix every field. Setup checks both produce the same names.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FieldPipelineBenchmark {
+    private static final int DROPPED_FIELDS = 10;
+
+    @Param({"SCHEMA", "SCHEMALESS"})
+    public RecordMode mode;
+
+    private SinkRecord record;
+    private FieldPipeline<SinkRecord> pipeline;
+    private List<Transformation<SinkRecord>> chain;
+
+    @Setup
+    public void setup() {
+        final Schema schema = RecordShape.WIDE.schema(NameStyle.SNAKE_UNDERSCORE, "Record");
+        record = mode.record("benchmark", "key", schema, 1);
+
+        final List<String> dropped = new ArrayList<>();
+        final List<String> renames = new ArrayList<>();
+        for (Field field : schema.fields()) {
+            if (field.index() < DROPPED_FIELDS) {
+                dropped.add(field.name());
+            }
+        }
+        final String renamed = NameStyle.CAMEL.name("field", "number", String.valueOf(DROPPED_FIELDS));
+
+        final Map<String, String> props = new HashMap<>();
+        props.put("pipeline", "drop,key,case,rename,prefix");
+        props.put("pipeline.drop.type", "drop");
+        props.put("pipeline.drop.fields", String.join(",", dropped));
+        props.put("pipeline.key.type", "key");
+        props.put("pipeline.key.key.field.name", "record_key");
+        props.put("pipeline.case.type", "case");
+        props.put("pipeline.case.convert.from.to", "snakeunderscore2camel");
+        props.put("pipeline.rename.type", "rename");
+        props.put("pipeline.rename.renames", renamed + ":id");
+        props.put("pipeline.prefix.type", "prefix");
+        props.put("pipeline.prefix.prefix", "p_");
+        pipeline = new FieldPipeline<>();
+        pipeline.configure(props);
+
+        chain = new ArrayList<>();
+        chain.add(configure(new ReplaceField.Value<>(), "blacklist", String.join(",", dropped)));
+        chain.add(configure(new KeyToValue<>(), "key.field.name", "record_key"));
+        chain.add(configure(new ConvertCase.Value<>(), "convert.from.to", "snakeunderscore2camel"));
+        for (String name : fieldNames(apply(chain, record).value())) {
+            renames.add(name + ":p_" + (name.equals(renamed) ? "id" : name));
+        }
+        chain.add(configure(new ReplaceField.Value<>(), "renames", String.join(",", renames)));
+
+        final Object pipelineNames = fieldNames(pipeline.apply(record).value());
+        final Object chainNames = fieldNames(apply(chain, record).value());
+        if (!pipelineNames.equals(chainNames)) {
+            throw new IllegalStateException("Pipeline and chain disagree: " + pipelineNames + " versus " + chainNames);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.close();
+        chain.forEach(Transformation::close);
+    }
+
+    @Benchmark
+    public SinkRecord pipeline() {
+        return pipeline.apply(record);
+    }
+
+    @Benchmark
+    public SinkRecord chain() {
+        return apply(chain, record);
+    }
+
+    private static SinkRecord apply(List<Transformation<SinkRecord>> chain, SinkRecord record) {
+        SinkRecord updatedRecord = record;
+        for (int i = 0; i < chain.size(); i++) {
+            updatedRecord = chain.get(i).apply(updatedRecord);
+        }
+        return updatedRecord;
+    }
+
+    private static Transformation<SinkRecord> configure(Transformation<SinkRecord> transform, String name, String value) {
+        transform.configure(Collections.singletonMap(name, value));
+        return transform;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TreeSet<String> fieldNames(Object value) {
+        final TreeSet<String> names = new TreeSet<>();
+        if (value instanceof Struct) {
+            for (Field field : ((Struct) value).schema().fields()) {
+                names.add(field.name());
+            }
+        } else {
+            names.addAll(((Map<String, Object>) value).keySet());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import com.github.kenshin579.kafka.connect.transform.changecase.KeyToValue;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KeyToValue for every record shape and mode, with a warm and a cold schema cache like {@link ConvertCaseBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyToValueBenchmark {
+    @Param({"WIDE", "DEEP", "REPEATED_ARRAY"})
+    public RecordShape shape;
+
+    @Param({"SCHEMA", "SCHEMALESS"})
+    public RecordMode mode;
+
+    private KeyToValue<SinkRecord> transform;
+    private SinkRecord[] records;
+    private int next;
+
+    @Setup
+    public void setup() {
+        transform = new KeyToValue<>();
+        transform.configure(Collections.singletonMap("key.field.name", "record_key"));
+
+        records = new SinkRecord[ConvertCaseBenchmark.COLD_SCHEMAS];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = mode.record("benchmark", "key-" + i, shape.schema(NameStyle.SNAKE_UNDERSCORE, "Record" + i), i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        transform.close();
+    }
+
+    @Benchmark
+    public SinkRecord warmCache() {
+        return transform.apply(records[0]);
+    }
+
+    @Benchmark
+    public SinkRecord coldCache() {
+        final SinkRecord record = records[next];
+        next = (next + 1) % records.length;
+        return transform.apply(record);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+/**
+ * Log-linear latency histogram: every power of two is split into 32 buckets, so percentiles are within about 3%.
+ * Not thread safe, use one per thread and merge them.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_MASK = (1 << SUB_BUCKET_BITS) - 1;
+
+    private final long[] counts = new long[64 << SUB_BUCKET_BITS];
+    private long count;
+    private long max;
+
+    public void record(long value) {
+        counts[index(value)]++;
+        count++;
+        max = Math.max(max, value);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    /*
+        Lower bound of the bucket holding the percentile
+     */
+    public long percentile(double percentile) {
+        final long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return lowerBound(i);
+            }
+        }
+        return 0L;
+    }
+
+    private static int index(long value) {
+        if (value <= SUB_BUCKET_MASK) {
+            return (int) Math.max(0, value);
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & SUB_BUCKET_MASK);
+    }
+
+    private static long lowerBound(int index) {
+        final int bucket = index >>> SUB_BUCKET_BITS;
+        final int subBucket = index & SUB_BUCKET_MASK;
+        if (bucket == 0) {
+            return subBucket;
+        }
+        return ((long) ((1 << SUB_BUCKET_BITS) | subBucket)) << (bucket - 1);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import com.github.kenshin579.kafka.connect.transform.changecase.ConvertCase;
+import com.github.kenshin579.kafka.connect.transform.changecase.KeyToValue;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.apache.kafka.connect.transforms.Transformation;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives generated records through a transform chain for a fixed duration and reports throughput,
+ * latency percentiles, allocation rate and GC totals. Runs in process, no Kafka broker is needed.
+ * <pre>
+ * java -cp target/benchmarks.jar com.github.kenshin579.kafka.connect.transform.changecase.benchmarks.LoadHarness \
+ *     --duration-seconds 300 --threads 4 --fields 30 --depth 3 --array-size 20 --casing-mix 0.6,0.4,0 --churn-rate 0.001
+ * </pre>
+ */
+public final class LoadHarness {
+    private static final Map<String, String> DEFAULTS = new HashMap<>();
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static {
+        DEFAULTS.put("duration-seconds", "120");
+        DEFAULTS.put("report-seconds", "10");
+        DEFAULTS.put("threads", "1");
+        DEFAULTS.put("fields", "20");
+        DEFAULTS.put("depth", "2");
+        DEFAULTS.put("array-size", "10");
+        DEFAULTS.put("casing-mix", "1,0,0");
+        DEFAULTS.put("churn-rate", "0");
+        DEFAULTS.put("pool-size", "10000");
+        DEFAULTS.put("mode", "SCHEMA");
+        DEFAULTS.put("chain", "convert-case,key-to-value");
+        DEFAULTS.put("convert-from-to", "camel2snakeunderscore");
+        DEFAULTS.put("seed", "1");
+    }
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final Map<String, String> options = options(args);
+        final int threads = Integer.parseInt(options.get("threads"));
+        final long durationMs = Long.parseLong(options.get("duration-seconds")) * 1000L;
+        final long reportMs = Long.parseLong(options.get("report-seconds")) * 1000L;
+        System.out.println("Options " + options);
+
+        final List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Worker(options, i));
+        }
+        System.out.printf("Generated %d records per thread with %d schemas on thread 0%n",
+                workers.get(0).records.length, workers.get(0).schemas);
+
+        final GcMeter gc = new GcMeter();
+        final long start = System.currentTimeMillis();
+        final long end = start + durationMs;
+        for (Worker worker : workers) {
+            worker.end = end;
+            worker.start();
+        }
+
+        long lastReport = start;
+        long lastRecords = 0;
+        while (System.currentTimeMillis() < end) {
+            Thread.sleep(Math.min(reportMs, Math.max(1, end - System.currentTimeMillis())));
+            final long now = System.currentTimeMillis();
+            final long records = Worker.RECORDS.get();
+            System.out.printf("%6.1fs %,12.0f records/s%n", (now - start) / 1000.0, (records - lastRecords) * 1000.0 / Math.max(1, now - lastReport));
+            lastReport = now;
+            lastRecords = records;
+        }
+
+        final LatencyHistogram latencies = new LatencyHistogram();
+        long bytes = 0;
+        for (Worker worker : workers) {
+            worker.join();
+            latencies.add(worker.latencies);
+            bytes += worker.allocatedBytes;
+        }
+        final double seconds = (System.currentTimeMillis() - start) / 1000.0;
+
+        System.out.println();
+        System.out.printf("Records            %,d%n", latencies.count());
+        System.out.printf("Throughput         %,.0f records/s%n", latencies.count() / seconds);
+        System.out.printf("Latency ns         p50 %,d  p99 %,d  p99.9 %,d  max %,d%n",
+                latencies.percentile(50), latencies.percentile(99), latencies.percentile(99.9), latencies.max());
+        System.out.printf("Allocation         %,.1f MB/s  %,d bytes/record%n",
+                bytes / seconds / (1024 * 1024), latencies.count() == 0 ? 0 : bytes / latencies.count());
+        gc.print();
+    }
+
+    private static Map<String, String> options(String[] args) {
+        final Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (int i = 0; i < args.length; i += 2) {
+            final String name = args[i].startsWith("--") ? args[i].substring(2) : args[i];
+            if (!DEFAULTS.containsKey(name) || i + 1 == args.length) {
+                throw new IllegalArgumentException("Unknown or incomplete option " + args[i] + ", options are " + DEFAULTS.keySet());
+            }
+            options.put(name, args[i + 1]);
+        }
+        return options;
+    }
+
+    static List<Transformation<SinkRecord>> chain(String chain, String convertFromTo) {
+        final List<Transformation<SinkRecord>> transforms = new ArrayList<>();
+        for (String name : chain.split(",")) {
+            final Transformation<SinkRecord> transform;
+            switch (name.trim()) {
+                case "convert-case":
+                    transform = new ConvertCase.Value<>();
+                    transform.configure(Collections.singletonMap("convert.from.to", convertFromTo));
+                    break;
+                case "key-to-value":
+                    transform = new KeyToValue<>();
+                    transform.configure(Collections.singletonMap("key.field.name", "record_key"));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown transform " + name + ", use convert-case or key-to-value");
+            }
+            transforms.add(transform);
+        }
+        return transforms;
+    }
+
+    private static final class Worker extends Thread {
+        private static final AtomicLong RECORDS = new AtomicLong();
+
+        private final List<Transformation<SinkRecord>> transforms;
+        private final SinkRecord[] records;
+        private final int schemas;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private volatile long end;
+        private long allocatedBytes;
+
+        private Worker(Map<String, String> options, int index) {
+            super("load-harness-" + index);
+            final String[] mix = options.get("casing-mix").split(",");
+            final double[] casingMix = new double[mix.length];
+            for (int i = 0; i < mix.length; i++) {
+                casingMix[i] = Double.parseDouble(mix[i]);
+            }
+            final WorkloadGenerator generator = new WorkloadGenerator(
+                    Integer.parseInt(options.get("fields")),
+                    Integer.parseInt(options.get("depth")),
+                    Integer.parseInt(options.get("array-size")),
+                    casingMix,
+                    Double.parseDouble(options.get("churn-rate")),
+                    RecordMode.valueOf(options.get("mode")),
+                    Long.parseLong(options.get("seed")) + index);
+            records = new SinkRecord[Integer.parseInt(options.get("pool-size"))];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = generator.next("load-harness");
+            }
+            schemas = generator.schemas();
+            transforms = chain(options.get("chain"), options.get("convert-from-to"));
+        }
+
+        @Override
+        public void run() {
+            final long startBytes = THREADS.getThreadAllocatedBytes(getId());
+            long count = 0;
+            int next = 0;
+            while ((count & 1023) != 0 || System.currentTimeMillis() < end) {
+                SinkRecord record = records[next];
+                next = next + 1 == records.length ? 0 : next + 1;
+
+                final long start = System.nanoTime();
+                for (Transformation<SinkRecord> transform : transforms) {
+                    record = transform.apply(record);
+                }
+                latencies.record(System.nanoTime() - start);
+                if ((++count & 1023) == 0) {
+                    RECORDS.addAndGet(1024);
+                }
+            }
+            allocatedBytes = THREADS.getThreadAllocatedBytes(getId()) - startBytes;
+            transforms.forEach(Transformation::close);
+        }
+    }
+
+    private static final class GcMeter {
+        private final Map<String, long[]> before = new HashMap<>();
+
+        private GcMeter() {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                before.put(collector.getName(), new long[]{collector.getCollectionCount(), collector.getCollectionTime()});
+            }
+        }
+
+        private void print() {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                final long[] start = before.getOrDefault(collector.getName(), new long[2]);
+                System.out.printf("GC %-15s %,d collections  %,d ms%n", collector.getName(),
+                        collector.getCollectionCount() - start[0], collector.getCollectionTime() - start[1]);
+            }
+        }
+    }
+}
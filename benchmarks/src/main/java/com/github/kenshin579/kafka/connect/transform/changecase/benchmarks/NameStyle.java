@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+/**
+ * Case of generated field names. Records are generated in the source case of the conversion under test,
+ * so every name is actually rewritten.
+ */
+public enum NameStyle {
+    CAMEL,
+    SNAKE_UNDERSCORE,
+    SNAKE_HYPHEN;
+
+    public String name(String... words) {
+        final StringBuilder name = new StringBuilder();
+        for (int i = 0; i < words.length; i++) {
+            final String word = words[i].toLowerCase();
+            if (i == 0) {
+                name.append(word);
+            } else if (this == CAMEL) {
+                name.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                name.append(this == SNAKE_UNDERSCORE ? '_' : '-').append(word);
+            }
+        }
+        return name.toString();
+    }
+
+    /*
+        Source case of a convert.from.to value
+     */
+    public static NameStyle sourceOf(String convertFromTo) {
+        switch (convertFromTo.toLowerCase()) {
+            case "snakeunderscore2camel":
+                return SNAKE_UNDERSCORE;
+            case "snakehyphen2camel":
+                return SNAKE_HYPHEN;
+            default:
+                return CAMEL;
+        }
+    }
+}
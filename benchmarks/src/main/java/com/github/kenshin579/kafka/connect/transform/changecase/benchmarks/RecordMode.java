@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+/**
+ * Whether generated records carry their schema, like the AvroConverter, or are schemaless maps,
+ * like the JsonConverter with schemas disabled.
+ */
+public enum RecordMode {
+    SCHEMA,
+    SCHEMALESS;
+
+    public SinkRecord record(String topic, Object key, Schema schema, int seed) {
+        return record(topic, key, schema, seed, RecordShape.ARRAY_SIZE);
+    }
+
+    public SinkRecord record(String topic, Object key, Schema schema, int seed, int arraySize) {
+        final Object value = RecordShape.value(schema, seed, arraySize);
+        if (this == SCHEMA) {
+            return new SinkRecord(topic, 0, Schema.OPTIONAL_STRING_SCHEMA, key, schema, value, seed);
+        }
+        return new SinkRecord(topic, 0, null, key, null, RecordShape.schemaless(value), seed);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Record shapes used by the benchmarks. Schemas get the given name, so distinct names give distinct
+ * schemas that miss the schema cache.
+ */
+public enum RecordShape {
+    /*
+        One flat struct with many fields of mixed types
+     */
+    WIDE {
+        @Override
+        public Schema schema(NameStyle style, String name) {
+            final SchemaBuilder builder = SchemaBuilder.struct().name(name);
+            for (int i = 0; i < WIDE_FIELDS; i++) {
+                builder.field(style.name("field", "number", String.valueOf(i)), LEAF_SCHEMAS[i % LEAF_SCHEMAS.length]);
+            }
+            return builder.build();
+        }
+    },
+    /*
+        Structs nested in structs, a few fields on every level
+     */
+    DEEP {
+        @Override
+        public Schema schema(NameStyle style, String name) {
+            Schema schema = null;
+            for (int depth = DEEP_LEVELS; depth > 0; depth--) {
+                final SchemaBuilder builder = SchemaBuilder.struct().name(depth == 1 ? name : name + "Level" + depth);
+                builder.field(style.name("level", "id"), Schema.INT32_SCHEMA);
+                builder.field(style.name("display", "name"), Schema.STRING_SCHEMA);
+                builder.field(style.name("is", "active"), Schema.BOOLEAN_SCHEMA);
+                if (schema != null) {
+                    builder.field(style.name("next", "level"), schema);
+                }
+                schema = builder.build();
+            }
+            return schema;
+        }
+    },
+    /*
+        The shape of test1.json, with the repeated element array grown to a realistic size
+     */
+    REPEATED_ARRAY {
+        @Override
+        public Schema schema(NameStyle style, String name) {
+            final Schema repeated = SchemaBuilder.struct()
+                    .field(style.name("repeated", "one"), Schema.STRING_SCHEMA)
+                    .field(style.name("repeated", "two"), Schema.STRING_SCHEMA)
+                    .build();
+            final Schema innerMost = SchemaBuilder.struct()
+                    .field(style.name("media", "type"), Schema.STRING_SCHEMA)
+                    .build();
+            final Schema innerMap = SchemaBuilder.struct()
+                    .field(style.name("repeated", "element"), SchemaBuilder.array(repeated).build())
+                    .field(style.name("inner", "most"), innerMost)
+                    .field(style.name("display", "name"), Schema.STRING_SCHEMA)
+                    .build();
+            return SchemaBuilder.struct().name(name)
+                    .field("living", Schema.BOOLEAN_SCHEMA)
+                    .field("salary", Schema.FLOAT64_SCHEMA)
+                    .field(style.name("first", "name"), Schema.STRING_SCHEMA)
+                    .field(style.name("inner", "map"), innerMap)
+                    .field(style.name("address", "number"), Schema.INT32_SCHEMA)
+                    .build();
+        }
+    };
+
+    public static final int WIDE_FIELDS = 100;
+    public static final int DEEP_LEVELS = 10;
+    public static final int ARRAY_SIZE = 50;
+
+    private static final Schema[] LEAF_SCHEMAS = {
+            Schema.INT32_SCHEMA, Schema.STRING_SCHEMA, Schema.FLOAT64_SCHEMA, Schema.BOOLEAN_SCHEMA
+    };
+
+    public abstract Schema schema(NameStyle style, String name);
+
+    /*
+        Value of the schema with every field set, arrays have ARRAY_SIZE elements
+     */
+    public static Object value(Schema schema, int seed) {
+        return value(schema, seed, ARRAY_SIZE);
+    }
+
+    public static Object value(Schema schema, int seed, int arraySize) {
+        switch (schema.type()) {
+            case INT32:
+                return seed;
+            case INT64:
+                return (long) seed;
+            case FLOAT64:
+                return seed * 1.5;
+            case BOOLEAN:
+                return seed % 2 == 0;
+            case STRING:
+                return "value-" + seed;
+            case ARRAY:
+                final List<Object> list = new ArrayList<>(arraySize);
+                for (int i = 0; i < arraySize; i++) {
+                    list.add(value(schema.valueSchema(), seed + i, arraySize));
+                }
+                return list;
+            case STRUCT:
+                final Struct struct = new Struct(schema);
+                for (Field field : schema.fields()) {
+                    struct.put(field, value(field.schema(), seed + field.index(), arraySize));
+                }
+                return struct;
+            default:
+                throw new IllegalArgumentException("Unsupported schema type " + schema.type());
+        }
+    }
+
+    /*
+        Schemaless copy of a value, structs become HashMaps like the JsonConverter produces
+     */
+    public static Object schemaless(Object value) {
+        if (value instanceof Struct) {
+            final Struct struct = (Struct) value;
+            final Map<String, Object> map = new HashMap<>();
+            for (Field field : struct.schema().fields()) {
+                map.put(field.name(), schemaless(struct.get(field)));
+            }
+            return map;
+        } else if (value instanceof List) {
+            final List<Object> list = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                list.add(schemaless(element));
+            }
+            return list;
+        }
+        return value;
+    }
+}
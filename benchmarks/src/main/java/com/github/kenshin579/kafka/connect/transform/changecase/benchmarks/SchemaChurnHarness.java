@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import com.github.kenshin579.kafka.connect.transform.changecase.ConvertCase;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays a population of distinct schemas through ConvertCase with a uniform, Zipfian or adversarial
+ * rotation, optionally on several threads each with its own transform like the tasks of a worker.
+ * Reports the schema cache miss rate, the share of conversion time spent compiling schemas and the heap
+ * retained by the transforms. Cache statistics are read from the transform metrics over JMX.
+ * <pre>
+ * java -cp target/benchmarks.jar com.github.kenshin579.kafka.connect.transform.changecase.benchmarks.SchemaChurnHarness \
+ *     --population 300 --pattern ZIPF --threads 4 --cache-size 16
+ * </pre>
+ */
+public final class SchemaChurnHarness {
+    private static final String METRICS_NAME = "schema-churn-harness";
+    private static final Map<String, String> DEFAULTS = new HashMap<>();
+
+    static {
+        DEFAULTS.put("population", "200");
+        DEFAULTS.put("pattern", "ZIPF");
+        DEFAULTS.put("zipf-exponent", "1.0");
+        DEFAULTS.put("threads", "1");
+        DEFAULTS.put("records", "200000");
+        DEFAULTS.put("cache-size", "16");
+        DEFAULTS.put("shared", "false");
+        DEFAULTS.put("fields", "20");
+        DEFAULTS.put("depth", "1");
+        DEFAULTS.put("array-size", "5");
+        DEFAULTS.put("mode", "SCHEMA");
+        DEFAULTS.put("convert-from-to", "camel2snakeunderscore");
+        DEFAULTS.put("seed", "1");
+    }
+
+    /*
+        Order in which schemas of the population are picked
+     */
+    public enum Pattern {
+        UNIFORM,
+        ZIPF,
+        /*
+            Cycles through the whole population, the worst case for an LRU smaller than the population
+         */
+        ADVERSARIAL
+    }
+
+    private SchemaChurnHarness() {
+    }
+
+    public static void main(String[] args) throws InterruptedException, JMException {
+        final Map<String, String> options = options(args);
+        System.out.println("Options " + options);
+        final int population = Integer.parseInt(options.get("population"));
+        final int threads = Integer.parseInt(options.get("threads"));
+        final int records = Integer.parseInt(options.get("records"));
+        final long seed = Long.parseLong(options.get("seed"));
+
+        final WorkloadGenerator generator = new WorkloadGenerator(
+                Integer.parseInt(options.get("fields")),
+                Integer.parseInt(options.get("depth")),
+                Integer.parseInt(options.get("array-size")),
+                new double[]{1, 0, 0},
+                1.0,
+                RecordMode.valueOf(options.get("mode")),
+                seed);
+        final SinkRecord[] schemas = new SinkRecord[population];
+        for (int i = 0; i < population; i++) {
+            schemas[i] = generator.next("schema-churn");
+        }
+
+        final Map<String, String> config = new HashMap<>();
+        config.put("convert.from.to", options.get("convert-from-to"));
+        config.put("schema.cache.size", options.get("cache-size"));
+        config.put("schema.cache.shared", options.get("shared"));
+        config.put("metrics.enabled", "true");
+        config.put("metrics.name", METRICS_NAME);
+
+        final long heapBefore = usedHeapAfterGc();
+        final List<Replayer> replayers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final ConvertCase<SinkRecord> transform = new ConvertCase.Value<>();
+            transform.configure(config);
+            replayers.add(new Replayer(transform, schemas,
+                    sequence(Pattern.valueOf(options.get("pattern")), population, records,
+                            Double.parseDouble(options.get("zipf-exponent")), new Random(seed + i)), i));
+        }
+
+        final long start = System.nanoTime();
+        for (Replayer replayer : replayers) {
+            replayer.start();
+        }
+        long convertNs = 0;
+        for (Replayer replayer : replayers) {
+            replayer.join();
+            convertNs += replayer.convertNs;
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        final long heapRetained = usedHeapAfterGc() - heapBefore;
+
+        final double hits = metric("schema-cache-hit-total");
+        final double misses = metric("schema-cache-miss-total");
+        final double evictions = metric("schema-cache-eviction-total");
+        final double compileNs = metric("schema-compile-time-total");
+
+        System.out.println();
+        System.out.printf("Records            %,d in %.1fs, %,.0f records/s%n", (long) threads * records, seconds, threads * records / seconds);
+        System.out.printf("Cache miss rate    %.2f%%  (%,.0f misses, %,.0f hits, %,.0f evictions)%n",
+                100 * misses / Math.max(1, hits + misses), misses, hits, evictions);
+        System.out.printf("Compile time share %.2f%% of conversion time%n", 100 * compileNs / Math.max(1, convertNs));
+        System.out.printf("Heap retained      %,d KB by %d transform(s)%n", heapRetained / 1024, threads);
+
+        for (Replayer replayer : replayers) {
+            replayer.transform.close();
+        }
+    }
+
+    private static Map<String, String> options(String[] args) {
+        final Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (int i = 0; i < args.length; i += 2) {
+            final String name = args[i].startsWith("--") ? args[i].substring(2) : args[i];
+            if (!DEFAULTS.containsKey(name) || i + 1 == args.length) {
+                throw new IllegalArgumentException("Unknown or incomplete option " + args[i] + ", options are " + DEFAULTS.keySet());
+            }
+            options.put(name, args[i + 1]);
+        }
+        return options;
+    }
+
+    static int[] sequence(Pattern pattern, int population, int length, double zipfExponent, Random random) {
+        final int[] sequence = new int[length];
+        if (pattern == Pattern.ADVERSARIAL) {
+            for (int i = 0; i < length; i++) {
+                sequence[i] = i % population;
+            }
+        } else if (pattern == Pattern.UNIFORM) {
+            for (int i = 0; i < length; i++) {
+                sequence[i] = random.nextInt(population);
+            }
+        } else {
+            final double[] cumulative = new double[population];
+            double total = 0;
+            for (int i = 0; i < population; i++) {
+                total += 1 / Math.pow(i + 1, zipfExponent);
+                cumulative[i] = total;
+            }
+            for (int i = 0; i < length; i++) {
+                final int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                sequence[i] = Math.min(population - 1, index >= 0 ? index : -index - 1);
+            }
+        }
+        return sequence;
+    }
+
+    /*
+        Sum of the metric over the topics of the harness transforms
+     */
+    private static double metric(String name) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        double total = 0;
+        for (ObjectName objectName : server.queryNames(new ObjectName(
+                "kafka.connect.transforms:type=convert-case-metrics,transform=" + METRICS_NAME + ",*"), null)) {
+            total += (Double) server.getAttribute(objectName, name);
+        }
+        return total;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static final class Replayer extends Thread {
+        private final ConvertCase<SinkRecord> transform;
+        private final SinkRecord[] schemas;
+        private final int[] sequence;
+        private long convertNs;
+
+        private Replayer(ConvertCase<SinkRecord> transform, SinkRecord[] schemas, int[] sequence, int index) {
+            super("schema-churn-" + index);
+            this.transform = transform;
+            this.schemas = schemas;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            for (int index : sequence) {
+                transform.apply(schemas[index]);
+            }
+            convertNs = System.nanoTime() - start;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase.benchmarks;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+import java.util.Random;
+
+/**
+ * Generates records from a template: leaf fields per level, nesting depth, array size, the mix of
+ * name cases and the rate at which records switch to a new schema. Generation is seeded, so runs are repeatable.
+ */
+public final class WorkloadGenerator {
+    private final int fields;
+    private final int depth;
+    private final int arraySize;
+    private final double[] casingMix;
+    private final double churnRate;
+    private final RecordMode mode;
+    private final Random random;
+
+    private Schema schema;
+    private int schemas;
+    private int seed;
+
+    /*
+        casingMix holds the share of CAMEL, SNAKE_UNDERSCORE and SNAKE_HYPHEN names, in NameStyle order
+     */
+    public WorkloadGenerator(int fields, int depth, int arraySize, double[] casingMix, double churnRate, RecordMode mode, long seed) {
+        if (casingMix.length != NameStyle.values().length) {
+            throw new IllegalArgumentException("Casing mix needs one share per name style");
+        }
+        this.fields = fields;
+        this.depth = depth;
+        this.arraySize = arraySize;
+        this.casingMix = casingMix.clone();
+        this.churnRate = churnRate;
+        this.mode = mode;
+        this.random = new Random(seed);
+        this.schema = newSchema();
+    }
+
+    public int schemas() {
+        return schemas;
+    }
+
+    public SinkRecord next(String topic) {
+        if (churnRate > 0 && random.nextDouble() < churnRate) {
+            schema = newSchema();
+        }
+        seed++;
+        return mode.record(topic, "key-" + seed, schema, seed, arraySize);
+    }
+
+    /*
+        Generates a fresh schema, names are drawn again so the new schema also gets new field names
+     */
+    private Schema newSchema() {
+        final String name = "Generated" + schemas++;
+        Schema nested = null;
+        for (int level = depth; level >= 0; level--) {
+            final SchemaBuilder builder = SchemaBuilder.struct().name(level == 0 ? name : name + "Level" + level);
+            for (int i = 0; i < fields; i++) {
+                builder.field(fieldName("field", "number", String.valueOf(i)), leafSchema(i));
+            }
+            if (arraySize > 0) {
+                final Schema element = SchemaBuilder.struct()
+                        .field(fieldName("element", "id"), Schema.INT32_SCHEMA)
+                        .field(fieldName("element", "name"), Schema.STRING_SCHEMA)
+                        .build();
+                builder.field(fieldName("repeated", "element"), SchemaBuilder.array(element).build());
+            }
+            if (nested != null) {
+                builder.field(fieldName("next", "level"), nested);
+            }
+            nested = builder.build();
+        }
+        return nested;
+    }
+
+    private String fieldName(String... words) {
+        double draw = random.nextDouble();
+        for (int i = 0; i < casingMix.length; i++) {
+            draw -= casingMix[i];
+            if (draw < 0) {
+                return NameStyle.values()[i].name(words);
+            }
+        }
+        return NameStyle.values()[casingMix.length - 1].name(words);
+    }
+
+    private static Schema leafSchema(int index) {
+        switch (index % 4) {
+            case 0:
+                return Schema.INT32_SCHEMA;
+            case 1:
+                return Schema.STRING_SCHEMA;
+            case 2:
+                return Schema.FLOAT64_SCHEMA;
+            default:
+                return Schema.BOOLEAN_SCHEMA;
+        }
+    }
+}
@@ -0,0 +1,535 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Struct;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts values iteratively with an explicit work stack instead of recursion,
+ * so deeply nested documents cannot overflow the thread stack.
+ * Frames are reused between records. An engine is not thread safe, use one per thread.
+ */
+final class ConversionEngine {
+    private static final int STRUCT = 0;
+    private static final int LIST = 1;
+    private static final int MAP = 2;
+    private static final int SCHEMALESS_LIST = 3;
+    /*
+        Keys sampled from a schemaless map to tell whether its keys are data
+     */
+    private static final int DATA_KEY_SAMPLE = 8;
+
+    private final FieldNaming converter;
+    private final FieldNaming dataKeyNaming;
+    private final ParallelListConverter parallel;
+    private Frame[] frames = new Frame[16];
+    private int top;
+    private long fieldsConverted;
+    private long fieldsDropped;
+    /*
+        Time and allocated bytes per field path while profiling, null otherwise
+     */
+    private Map<String, long[]> fieldCosts;
+    private String profileRoot;
+    private String pendingPath;
+    private long pendingNs;
+    private long pendingBytes;
+
+    /*
+        parallel is null unless large arrays are split across a fork-join pool
+     */
+    ConversionEngine(FieldNaming converter, ParallelListConverter parallel) {
+        this(converter, null, parallel);
+    }
+
+    /*
+        dataKeyNaming names the keys of schemaless maps whose keys look like data, such as ids or timestamps.
+        It is null when those maps are not detected and their keys are named like fields
+     */
+    ConversionEngine(FieldNaming converter, FieldNaming dataKeyNaming, ParallelListConverter parallel) {
+        this.converter = converter;
+        this.dataKeyNaming = dataKeyNaming;
+        this.parallel = parallel;
+    }
+
+    /*
+        Starts counting converted and dropped fields, returns the start time of the conversion
+     */
+    long startRecord() {
+        fieldsConverted = 0;
+        fieldsDropped = 0;
+        return System.nanoTime();
+    }
+
+    /*
+        Fields written since startRecord. Fields converted on parallel workers are not included
+     */
+    long fieldsConverted() {
+        return fieldsConverted;
+    }
+
+    long fieldsDropped() {
+        return fieldsDropped;
+    }
+
+    /*
+        Measures each nested field of the following conversions under root, e.g. root.line_items[].address.
+        Costs include the nested fields below. A null root stops profiling
+     */
+    void profile(String root) {
+        profileRoot = root;
+        fieldCosts = root == null ? null : new HashMap<>();
+        pendingPath = null;
+    }
+
+    /*
+        Time in ns and allocated bytes per field path measured since profile was called
+     */
+    Map<String, long[]> fieldCosts() {
+        return fieldCosts;
+    }
+
+    /*
+        Create updated value based on the compiled plan. Returns null when no field has a value
+     */
+    Struct convertStruct(ConversionPlan plan, Struct value) {
+        if (value == null) {
+            return null;
+        }
+        final int base = top;
+        push(STRUCT, plan, value, new Struct(plan.schema));
+        return (Struct) run(base);
+    }
+
+    /*
+        Like convertStruct for a plan compiled from the value schema followed by extra fields.
+        The values of those fields are taken from extraValues instead of the value
+     */
+    Struct convertStruct(ConversionPlan plan, Struct value, Object[] extraValues) {
+        final int base = top;
+        push(STRUCT, plan, value, new Struct(plan.schema));
+        frames[base].extraValues = extraValues;
+        frames[base].extraStart = value.schema().fields().size();
+        return (Struct) run(base);
+    }
+
+    /*
+        Create new schema less object based on conversion rules
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> convertMap(Map<String, Object> value) {
+        final int base = top;
+        push(MAP, null, value, new HashMap<String, Object>());
+        return (Map<String, Object>) run(base);
+    }
+
+    /*
+        Create updated list based on the compiled array plan
+     */
+    @SuppressWarnings("unchecked")
+    List<Object> convertList(ConversionPlan plan, List<?> value) {
+        final int base = top;
+        final Object list = pushList(plan, value);
+        return (List<Object>) (list != null ? list : run(base));
+    }
+
+    /*
+        Create new schema less list based on conversion rules
+     */
+    @SuppressWarnings("unchecked")
+    List<Object> convertSchemalessList(List<?> value) {
+        final int base = top;
+        final Object list = pushSchemalessList(value);
+        return (List<Object>) (list != null ? list : run(base));
+    }
+
+    /*
+        Processes frames above base until the first one completes. Nested calls on the same
+        engine only use frames above the current top, so they leave the caller's frames untouched
+     */
+    private Object run(int base) {
+        while (true) {
+            final Frame frame = frames[top - 1];
+            if (!step(frame)) {
+                continue;
+            }
+
+            final Object result = frame.result();
+            if (frame.measured) {
+                addFieldCost(frame.path, frame.startNs, frame.startBytes);
+            }
+            frame.clear();
+            top--;
+            if (top == base) {
+                return result;
+            }
+            if (frames[top - 1].accept(result)) {
+                fieldsConverted++;
+            }
+        }
+    }
+
+    /*
+        Advances the frame until it pushes a child frame (false) or completes (true)
+     */
+    private boolean step(Frame frame) {
+        switch (frame.kind) {
+            case STRUCT:
+                return stepStruct(frame);
+            case LIST:
+                return stepList(frame);
+            case MAP:
+                return stepMap(frame);
+            default:
+                return stepSchemalessList(frame);
+        }
+    }
+
+    private boolean stepStruct(Frame frame) {
+        final ConversionPlan plan = frame.plan;
+        final Struct source = (Struct) frame.source;
+        final Struct target = (Struct) frame.target;
+        if (frame.index == 0) {
+            fieldsDropped += plan.dropped;
+        }
+        while (frame.index < plan.fields.length) {
+            final int i = frame.index++;
+            final ConversionPlan child = plan.children[i];
+            final Field sourceField = plan.sourceFields[i];
+            final Object fieldValue = sourceField.index() < frame.extraStart ? source.get(sourceField) : frame.extraValue(sourceField);
+            if (fieldValue == null) {
+                continue;
+            }
+            if (fieldCosts != null && child.kind != ConversionPlan.LEAF) {
+                startField(frame, sourceField.name());
+            }
+            switch (child.kind) {
+                case ConversionPlan.STRUCT:
+                    push(STRUCT, child, fieldValue, new Struct(child.schema));
+                    return false;
+                case ConversionPlan.ARRAY:
+                    frame.present = true;
+                    final Object list = pushList(child, (List<?>) fieldValue);
+                    if (list == null) {
+                        return false;
+                    }
+                    if (fieldCosts != null) {
+                        finishField();
+                    }
+                    target.put(plan.fields[i], list);
+                    fieldsConverted++;
+                    break;
+                default:
+                    target.put(plan.fields[i], fieldValue);
+                    fieldsConverted++;
+                    frame.present = true;
+            }
+        }
+        return true;
+    }
+
+    private boolean stepList(Frame frame) {
+        final ConversionPlan element = frame.plan.element;
+        @SuppressWarnings("unchecked") final List<Object> target = (List<Object>) frame.target;
+        while (frame.iterator.hasNext()) {
+            final Object elementValue = frame.iterator.next();
+            if (elementValue == null) {
+                continue;
+            }
+            if (element.kind == ConversionPlan.STRUCT) {
+                push(STRUCT, element, elementValue, new Struct(element.schema));
+                return false;
+            }
+            final Object list = pushList(element, (List<?>) elementValue);
+            if (list == null) {
+                return false;
+            }
+            target.add(list);
+        }
+        return true;
+    }
+
+    /*
+        Lists of leaf values are copied at once and large lists are converted in parallel, both are returned.
+        Other lists get a frame of their own and null is returned
+     */
+    private Object pushList(ConversionPlan plan, List<?> value) {
+        if (plan.element.kind == ConversionPlan.LEAF) {
+            return new ArrayList<>(value);
+        }
+        if (parallel != null && parallel.accepts(value)) {
+            return parallel.convertList(plan, value);
+        }
+        push(LIST, plan, value, new ArrayList<>(value.size()));
+        return null;
+    }
+
+    /*
+        Large lists are converted in parallel and returned, other lists get a frame of their own and null is returned
+     */
+    private Object pushSchemalessList(List<?> value) {
+        if (parallel != null && parallel.accepts(value)) {
+            return parallel.convertSchemalessList(value);
+        }
+        push(SCHEMALESS_LIST, null, value, new ArrayList<>(value.size()));
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean stepMap(Frame frame) {
+        final Map<String, Object> target = (Map<String, Object>) frame.target;
+        final FieldNaming converter = frame.naming;
+        while (frame.iterator.hasNext()) {
+            final Map.Entry<String, Object> entry = (Map.Entry<String, Object>) frame.iterator.next();
+            final Object v = entry.getValue();
+            if (fieldCosts != null && (v instanceof Map || v instanceof List)) {
+                startField(frame, entry.getKey());
+            }
+            if (v instanceof Map) {
+                frame.pendingKey = converter.convertField(entry.getKey(), true);
+                push(MAP, null, v, new HashMap<String, Object>());
+                return false;
+            } else if (v instanceof List) {
+                frame.pendingKey = converter.convertField(entry.getKey(), true);
+                final Object list = pushSchemalessList((List<?>) v);
+                if (list == null) {
+                    return false;
+                }
+                if (fieldCosts != null) {
+                    finishField();
+                }
+                target.put(frame.pendingKey, list);
+                fieldsConverted++;
+                continue;
+            }
+            final String fieldName2Use = converter.convertField(entry.getKey(), false);
+            if (fieldName2Use != null) {
+                target.put(fieldName2Use, v);
+                fieldsConverted++;
+            } else {
+                fieldsDropped++;
+            }
+        }
+        return true;
+    }
+
+    private boolean stepSchemalessList(Frame frame) {
+        @SuppressWarnings("unchecked") final List<Object> target = (List<Object>) frame.target;
+        while (frame.iterator.hasNext()) {
+            final Object e = frame.iterator.next();
+            if (e instanceof Map) {
+                push(MAP, null, e, new HashMap<String, Object>());
+                return false;
+            } else if (e instanceof List) {
+                final Object list = pushSchemalessList((List<?>) e);
+                if (list == null) {
+                    return false;
+                }
+                target.add(list);
+                continue;
+            }
+            target.add(e);
+        }
+        return true;
+    }
+
+    private void push(int kind, ConversionPlan plan, Object source, Object target) {
+        if (top == frames.length) {
+            frames = Arrays.copyOf(frames, top * 2);
+        }
+        Frame frame = frames[top];
+        if (frame == null) {
+            frame = new Frame();
+            frames[top] = frame;
+        }
+        frame.kind = kind;
+        frame.plan = plan;
+        frame.source = source;
+        frame.target = target;
+        frame.index = 0;
+        frame.present = false;
+        frame.extraStart = Integer.MAX_VALUE;
+        if (kind != STRUCT) {
+            frame.iterator = kind == MAP ? ((Map<?, ?>) source).entrySet().iterator() : ((List<?>) source).iterator();
+        }
+        if (kind == MAP) {
+            frame.naming = dataKeyNaming != null && hasDataKeys((Map<?, ?>) source) ? dataKeyNaming : converter;
+        }
+        if (fieldCosts != null) {
+            profileFrame(frame);
+        }
+        top++;
+    }
+
+    /*
+        Starts measuring the named nested field of frame. The frame pushed next takes the measurement over,
+        values converted at once call finishField instead
+     */
+    private void startField(Frame frame, String name) {
+        pendingPath = frame.path + "." + name;
+        pendingBytes = ConversionProfiler.allocatedBytes();
+        pendingNs = System.nanoTime();
+    }
+
+    private void finishField() {
+        addFieldCost(pendingPath, pendingNs, pendingBytes);
+        pendingPath = null;
+    }
+
+    /*
+        Frames of named fields are measured, list elements extend the path of their list
+     */
+    private void profileFrame(Frame frame) {
+        if (pendingPath != null) {
+            frame.path = pendingPath;
+            frame.startNs = pendingNs;
+            frame.startBytes = pendingBytes;
+            frame.measured = true;
+            pendingPath = null;
+        } else {
+            frame.path = top == 0 ? profileRoot : frames[top - 1].path + "[]";
+        }
+    }
+
+    private void addFieldCost(String path, long startNs, long startBytes) {
+        final long ns = System.nanoTime() - startNs;
+        final long bytes = ConversionProfiler.allocatedBytes() - startBytes;
+        long[] cost = fieldCosts.get(path);
+        if (cost == null) {
+            cost = new long[2];
+            fieldCosts.put(path, cost);
+        }
+        cost[0] += ns;
+        cost[1] += bytes;
+    }
+
+    /*
+        A map has data keys when most of its first keys look like data
+     */
+    private static boolean hasDataKeys(Map<?, ?> value) {
+        int sampled = 0;
+        int dataKeys = 0;
+        for (Object key : value.keySet()) {
+            if (key instanceof String && looksLikeData((String) key)) {
+                dataKeys++;
+            }
+            if (++sampled == DATA_KEY_SAMPLE) {
+                break;
+            }
+        }
+        return dataKeys * 2 > sampled;
+    }
+
+    /*
+        Field names start with a letter and have few digits. Ids, timestamps, dates and SKUs start with a digit
+        or are mostly digits
+     */
+    private static boolean looksLikeData(String key) {
+        if (key.isEmpty()) {
+            return false;
+        }
+        if (Character.isDigit(key.charAt(0))) {
+            return true;
+        }
+        int digits = 0;
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.isDigit(key.charAt(i))) {
+                digits++;
+            }
+        }
+        return key.length() >= 4 && digits * 2 >= key.length();
+    }
+
+    private static final class Frame {
+        private int kind;
+        private ConversionPlan plan;
+        private Object source;
+        private Object target;
+        private Iterator<?> iterator;
+        private int index;
+        private boolean present;
+        private String pendingKey;
+        private FieldNaming naming;
+        private Object[] extraValues;
+        private int extraStart;
+        private String path;
+        private boolean measured;
+        private long startNs;
+        private long startBytes;
+
+        /*
+            Value of an extra field, with the default of its schema like Struct.get
+         */
+        private Object extraValue(Field field) {
+            final Object value = extraValues[field.index() - extraStart];
+            return value == null ? field.schema().defaultValue() : value;
+        }
+
+        private Object result() {
+            if (kind == STRUCT && !present) {
+                return null;
+            }
+            return target;
+        }
+
+        /*
+            Takes the result of the child frame that just completed. Returns true when it was written to a field
+         */
+        @SuppressWarnings("unchecked")
+        private boolean accept(Object child) {
+            switch (kind) {
+                case STRUCT:
+                    if (child != null) {
+                        ((Struct) target).put(plan.fields[index - 1], child);
+                        present = true;
+                        return true;
+                    }
+                    return false;
+                case LIST:
+                    if (child != null) {
+                        ((List<Object>) target).add(child);
+                    }
+                    return false;
+                case MAP:
+                    ((Map<String, Object>) target).put(pendingKey, child);
+                    return true;
+                default:
+                    ((List<Object>) target).add(child);
+                    return false;
+            }
+        }
+
+        private void clear() {
+            plan = null;
+            source = null;
+            target = null;
+            iterator = null;
+            pendingKey = null;
+            extraValues = null;
+            path = null;
+            measured = false;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.transforms.util.SchemaUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Compiled conversion of one source schema: the updated schema plus, for every updated field,
+ * the source field it is copied from. Values are then converted positionally without any name lookup.
+ */
+final class ConversionPlan {
+    static final int LEAF = 0;
+    static final int STRUCT = 1;
+    static final int ARRAY = 2;
+
+    /*
+        Values of leaf schemas are copied as they are
+     */
+    static final ConversionPlan LEAF_PLAN = new ConversionPlan(LEAF, null, null, null, null, null, 0);
+
+    final int kind;
+    final Schema schema;
+    final Field[] fields;
+    final Field[] sourceFields;
+    final ConversionPlan[] children;
+    final ConversionPlan element;
+    final int dropped;
+
+    private ConversionPlan(int kind, Schema schema, Field[] fields, Field[] sourceFields, ConversionPlan[] children,
+                           ConversionPlan element, int dropped) {
+        this.kind = kind;
+        this.schema = schema;
+        this.fields = fields;
+        this.sourceFields = sourceFields;
+        this.children = children;
+        this.element = element;
+        this.dropped = dropped;
+    }
+
+    Schema schema() {
+        return schema;
+    }
+
+    static boolean isContainer(Schema schema) {
+        return schema.type() == Schema.Type.STRUCT || schema.type() == Schema.Type.ARRAY;
+    }
+
+    /*
+        Struct plan of fields the caller assembled itself, e.g. from a field pipeline. The fields of schema
+        are read from sourceFields in the same order
+     */
+    static ConversionPlan struct(Schema schema, Field[] sourceFields, ConversionPlan[] children, int dropped) {
+        return new ConversionPlan(STRUCT, schema, schema.fields().toArray(new Field[0]), sourceFields, children, null, dropped);
+    }
+
+    /*
+        Create the plan of a new schema applying the conversion rules. Nested schemas are compiled
+        with an explicit stack, so nesting depth is not limited by the thread stack
+     */
+    static ConversionPlan compile(Schema schema, FieldNaming converter) {
+        final Deque<CompileFrame> stack = new ArrayDeque<>();
+        stack.push(new CompileFrame(schema, schema));
+
+        ConversionPlan result = null;
+        while (true) {
+            final CompileFrame frame = stack.peek();
+            if (result != null) {
+                frame.accept(result);
+                result = null;
+            }
+
+            final Schema child = frame.nextChild(converter);
+            if (child != null) {
+                // Struct elements of an array take their name, version, doc and parameters from the array
+                stack.push(new CompileFrame(child, frame.schema.type() == Schema.Type.ARRAY ? frame.schema : child));
+                continue;
+            }
+
+            result = frame.build();
+            stack.pop();
+            if (stack.isEmpty()) {
+                return result;
+            }
+        }
+    }
+
+    private static final class CompileFrame {
+        private final Schema schema;
+        private final Schema basics;
+        private final List<String> names = new ArrayList<>();
+        private final List<Field> sourceFields = new ArrayList<>();
+        private final List<ConversionPlan> children = new ArrayList<>();
+        private int index;
+        private int dropped;
+        private String pendingName;
+
+        private CompileFrame(Schema schema, Schema basics) {
+            this.schema = schema;
+            this.basics = basics;
+        }
+
+        /*
+            Returns the next nested schema to compile, adding leaf fields on the way
+         */
+        private Schema nextChild(FieldNaming converter) {
+            if (schema.type() == Schema.Type.ARRAY) {
+                if (index++ == 0 && isContainer(schema.valueSchema())) {
+                    return schema.valueSchema();
+                }
+                return null;
+            }
+
+            final List<Field> fields = schema.fields();
+            while (index < fields.size()) {
+                final Field field = fields.get(index++);
+                final boolean structField = isContainer(field.schema());
+                final String fieldName2Use = converter.convertField(field.name(), structField);
+                if (structField) {
+                    pendingName = fieldName2Use;
+                    sourceFields.add(field);
+                    return field.schema();
+                }
+                if (fieldName2Use != null) {
+                    names.add(fieldName2Use);
+                    sourceFields.add(field);
+                    children.add(LEAF_PLAN);
+                } else {
+                    dropped++;
+                }
+            }
+            return null;
+        }
+
+        private void accept(ConversionPlan child) {
+            if (schema.type() == Schema.Type.ARRAY) {
+                children.add(child);
+            } else {
+                names.add(pendingName);
+                children.add(child);
+            }
+        }
+
+        private ConversionPlan build() {
+            if (schema.type() == Schema.Type.ARRAY) {
+                final ConversionPlan element = children.isEmpty() ? LEAF_PLAN : children.get(0);
+                final Schema valueSchema = element.kind == LEAF ? schema.valueSchema() : element.schema;
+                final Schema updatedSchema = SchemaUtil.copySchemaBasics(schema, SchemaBuilder.array(valueSchema)).optional().build();
+                return new ConversionPlan(ARRAY, updatedSchema, null, null, null, element, 0);
+            }
+
+            final SchemaBuilder builder = SchemaUtil.copySchemaBasics(basics, SchemaBuilder.struct());
+            for (int i = 0; i < names.size(); i++) {
+                final ConversionPlan child = children.get(i);
+                builder.field(names.get(i), child.kind == LEAF ? sourceFields.get(i).schema() : child.schema);
+            }
+            final Schema updatedSchema = builder.optional().build();
+            return new ConversionPlan(STRUCT, updatedSchema,
+                    updatedSchema.fields().toArray(new Field[0]),
+                    sourceFields.toArray(new Field[0]),
+                    children.toArray(new ConversionPlan[0]),
+                    null,
+                    dropped);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.utils.Sanitizer;
+import org.apache.kafka.connect.data.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Attributes the conversion time and allocated bytes of sampled records to their schema and nested field paths.
+ * The most expensive entries are kept in bounded tables, exposed over JMX as
+ * kafka.connect.transforms:type=convert-case-profiler,transform=&lt;name&gt; and logged periodically.
+ * Instances with the same name share their tables, e.g. all tasks of a connector.
+ */
+final class ConversionProfiler implements ConversionProfilerMBean {
+    private static final Logger log = LoggerFactory.getLogger(ConvertCase.class);
+
+    private static final Map<String, ConversionProfiler> PROFILERS = new HashMap<>();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /*
+        Tables keep more entries than they report, so entries climbing into the top N are not evicted early
+     */
+    private static final int TABLE_SIZE_FACTOR = 8;
+
+    private final String transform;
+    private final ObjectName objectName;
+    private final int topN;
+    private final long logIntervalMs;
+    private final CostTable schemas;
+    private final CostTable fields;
+    private final AtomicLong sampledRecords = new AtomicLong();
+    private final AtomicLong nextLogMs;
+    private int references;
+
+    private ConversionProfiler(String transform, ObjectName objectName, int topN, long logIntervalMs) {
+        this.transform = transform;
+        this.objectName = objectName;
+        this.topN = topN;
+        this.logIntervalMs = logIntervalMs;
+        this.schemas = new CostTable(topN * TABLE_SIZE_FACTOR);
+        this.fields = new CostTable(topN * TABLE_SIZE_FACTOR);
+        this.nextLogMs = new AtomicLong(System.currentTimeMillis() + logIntervalMs);
+    }
+
+    /*
+        Returns the profiler of the transform, registering its MBean on first use. Sizes are set by the first user
+     */
+    static synchronized ConversionProfiler acquire(String transform, int topN, long logIntervalMs) {
+        ConversionProfiler profiler = PROFILERS.get(transform);
+        if (profiler == null) {
+            final ObjectName objectName;
+            try {
+                objectName = new ObjectName(TransformMetrics.JMX_PREFIX
+                        + ":type=convert-case-profiler,transform=" + Sanitizer.jmxSanitize(transform));
+            } catch (MalformedObjectNameException e) {
+                throw new ConfigException("Invalid profiler name " + transform, e);
+            }
+            profiler = new ConversionProfiler(transform, objectName, topN, logIntervalMs);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(profiler, objectName);
+            } catch (JMException e) {
+                log.warn("Unable to register conversion profiler of {}", transform, e);
+            }
+            PROFILERS.put(transform, profiler);
+        }
+        profiler.references++;
+        return profiler;
+    }
+
+    void release() {
+        synchronized (ConversionProfiler.class) {
+            if (--references > 0) {
+                return;
+            }
+            PROFILERS.remove(transform);
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            } catch (JMException e) {
+                log.warn("Unable to unregister conversion profiler of {}", transform, e);
+            }
+        }
+    }
+
+    static boolean sampled(int sampleRate) {
+        return ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    /*
+        Bytes allocated by the current thread so far, 0 when the JVM does not measure it
+     */
+    static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0L;
+    }
+
+    static String schemaKey(String topic, Schema schema) {
+        if (schema == null) {
+            return topic + "/<schemaless>";
+        }
+        return schema.name() != null ? schema.name() : topic + "/<unnamed>";
+    }
+
+    /*
+        Records the cost of the whole record and of its nested fields, measured by the engine in the same pass
+     */
+    void profile(String schemaKey, long latencyNs, long bytes, Map<String, long[]> fieldCosts) {
+        schemas.add(schemaKey, latencyNs, bytes);
+        for (Map.Entry<String, long[]> entry : fieldCosts.entrySet()) {
+            fields.add(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+        sampledRecord();
+    }
+
+    /*
+        Summaries are logged by the thread that records the first sample after the interval
+     */
+    private void sampledRecord() {
+        sampledRecords.incrementAndGet();
+        final long now = System.currentTimeMillis();
+        final long nextLog = nextLogMs.get();
+        if (now >= nextLog && nextLogMs.compareAndSet(nextLog, now + logIntervalMs) && log.isInfoEnabled()) {
+            log.info("Conversion profile transform={} sampledRecords={} topSchemas={} topFields={}",
+                    transform, sampledRecords.get(), Arrays.toString(getTopSchemas()), Arrays.toString(getTopFields()));
+        }
+    }
+
+    @Override
+    public long getSampledRecords() {
+        return sampledRecords.get();
+    }
+
+    @Override
+    public String[] getTopSchemas() {
+        return schemas.top(topN);
+    }
+
+    @Override
+    public String[] getTopFields() {
+        return fields.top(topN);
+    }
+
+    @Override
+    public void reset() {
+        sampledRecords.set(0);
+        schemas.clear();
+        fields.clear();
+    }
+
+    /*
+        Bounded table of costs. When full, the cheapest entry makes room for a new one
+     */
+    static final class CostTable {
+        private final int capacity;
+        private final Map<String, Cost> costs = new HashMap<>();
+        private long totalNs;
+
+        CostTable(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void add(String key, long ns, long bytes) {
+            Cost cost = costs.get(key);
+            if (cost == null) {
+                if (costs.size() >= capacity) {
+                    evictCheapest();
+                }
+                cost = new Cost(key);
+                costs.put(key, cost);
+            }
+            cost.samples++;
+            cost.totalNs += ns;
+            cost.totalBytes += bytes;
+            totalNs += ns;
+        }
+
+        private void evictCheapest() {
+            Cost cheapest = null;
+            for (Cost cost : costs.values()) {
+                if (cheapest == null || cost.totalNs < cheapest.totalNs) {
+                    cheapest = cost;
+                }
+            }
+            costs.remove(cheapest.key);
+        }
+
+        synchronized String[] top(int n) {
+            final List<Cost> sorted = new ArrayList<>(costs.values());
+            sorted.sort((a, b) -> Long.compare(b.totalNs, a.totalNs));
+            final String[] rows = new String[Math.min(n, sorted.size())];
+            for (int i = 0; i < rows.length; i++) {
+                final Cost cost = sorted.get(i);
+                rows[i] = String.format("%s samples=%d time=%.1f%% avgNs=%d avgBytes=%d", cost.key, cost.samples,
+                        totalNs == 0 ? 0.0 : 100.0 * cost.totalNs / totalNs, cost.totalNs / cost.samples, cost.totalBytes / cost.samples);
+            }
+            return rows;
+        }
+
+        synchronized void clear() {
+            costs.clear();
+            totalNs = 0;
+        }
+    }
+
+    private static final class Cost {
+        private final String key;
+        private long samples;
+        private long totalNs;
+        private long totalBytes;
+
+        private Cost(String key) {
+            this.key = key;
+        }
+    }
+}
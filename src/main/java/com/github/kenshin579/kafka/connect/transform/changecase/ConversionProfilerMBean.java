@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+/**
+ * JMX view of the sampled conversion cost of a transform, see {@link ConversionProfiler}.
+ */
+public interface ConversionProfilerMBean {
+    long getSampledRecords();
+
+    /*
+        Schemas that took the most conversion time, most expensive first
+     */
+    String[] getTopSchemas();
+
+    /*
+        Top level fields of the schemas that took the most conversion time, most expensive first
+     */
+    String[] getTopFields();
+
+    void reset();
+}
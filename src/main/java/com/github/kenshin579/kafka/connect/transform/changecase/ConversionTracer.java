@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs the complete old to new field name mapping of sampled records, one line per record.
+ * Records are picked at random with a rate of one in N, or when their topic or schema name is selected.
+ */
+final class ConversionTracer {
+    private static final Logger log = LoggerFactory.getLogger(ConvertCase.class);
+
+    static final String DROPPED = "<dropped>";
+
+    private final FieldNameConverter converter;
+    private final int sampleRate;
+    private final Set<String> topics;
+    private final Set<String> schemas;
+
+    private ConversionTracer(FieldNameConverter converter, int sampleRate, List<String> topics, List<String> schemas) {
+        this.converter = converter;
+        this.sampleRate = sampleRate;
+        this.topics = new HashSet<>(topics);
+        this.schemas = new HashSet<>(schemas);
+    }
+
+    /*
+        Returns null when tracing is not configured, so the transform skips it altogether
+     */
+    static ConversionTracer create(FieldNameConverter converter, int sampleRate, List<String> topics, List<String> schemas) {
+        if (sampleRate == 0 && topics.isEmpty() && schemas.isEmpty()) {
+            return null;
+        }
+        return new ConversionTracer(converter, sampleRate, topics, schemas);
+    }
+
+    boolean sampled(String topic, Schema schema) {
+        return topics.contains(topic)
+                || (schema != null && schema.name() != null && schemas.contains(schema.name()))
+                || (sampleRate > 0 && ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+    }
+
+    void trace(String topic, Schema schema, Object value) {
+        if (log.isInfoEnabled()) {
+            log.info("Converted field names topic={} schema={} mapping={}",
+                    topic, schema == null ? null : schema.name(), schema == null ? mapping(value) : mapping(schema));
+        }
+    }
+
+    /*
+        Logs a mapping collected while the record was converted, as the JSON key rewriter does
+     */
+    void trace(String topic, Map<String, String> mapping) {
+        log.info("Converted field names topic={} schema={} mapping={}", topic, null, mapping);
+    }
+
+    /*
+        Dotted paths of every field in the schema, array elements are marked with []
+     */
+    Map<String, String> mapping(Schema schema) {
+        final Map<String, String> mapping = new LinkedHashMap<>();
+        final Deque<PathFrame> stack = new ArrayDeque<>();
+        stack.push(new PathFrame("", "", schema));
+        while (!stack.isEmpty()) {
+            final PathFrame frame = stack.pop();
+            final Schema current = (Schema) frame.value;
+            if (current.type() == Schema.Type.ARRAY) {
+                stack.push(new PathFrame(frame.oldPath + "[]", frame.newPath + "[]", current.valueSchema()));
+            } else if (current.type() == Schema.Type.STRUCT) {
+                for (Field field : current.fields()) {
+                    final boolean container = field.schema().type() == Schema.Type.STRUCT || field.schema().type() == Schema.Type.ARRAY;
+                    push(stack, mapping, frame, field.name(), converter.convertField(field.name(), container),
+                            container ? field.schema() : null);
+                }
+            }
+        }
+        return mapping;
+    }
+
+    /*
+        Dotted paths of every key in the schemaless value, paths repeated by list elements are listed once
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, String> mapping(Object value) {
+        final Map<String, String> mapping = new LinkedHashMap<>();
+        final Deque<PathFrame> stack = new ArrayDeque<>();
+        stack.push(new PathFrame("", "", value));
+        while (!stack.isEmpty()) {
+            final PathFrame frame = stack.pop();
+            if (frame.value instanceof List) {
+                for (Object element : (List<Object>) frame.value) {
+                    if (element instanceof Map || element instanceof List) {
+                        stack.push(new PathFrame(frame.oldPath + "[]", frame.newPath + "[]", element));
+                    }
+                }
+            } else if (frame.value instanceof Map) {
+                for (Map.Entry<String, Object> entry : ((Map<String, Object>) frame.value).entrySet()) {
+                    final boolean container = entry.getValue() instanceof Map || entry.getValue() instanceof List;
+                    push(stack, mapping, frame, entry.getKey(), converter.convertField(entry.getKey(), container),
+                            container ? entry.getValue() : null);
+                }
+            }
+        }
+        return mapping;
+    }
+
+    private static void push(Deque<PathFrame> stack, Map<String, String> mapping, PathFrame parent,
+                             String name, String updatedName, Object child) {
+        final String oldPath = parent.oldPath.isEmpty() ? name : parent.oldPath + "." + name;
+        if (updatedName == null) {
+            mapping.putIfAbsent(oldPath, DROPPED);
+            return;
+        }
+        final String newPath = parent.newPath.isEmpty() ? updatedName : parent.newPath + "." + updatedName;
+        mapping.putIfAbsent(oldPath, newPath);
+        if (child != null) {
+            stack.push(new PathFrame(oldPath, newPath, child));
+        }
+    }
+
+    private static final class PathFrame {
+        private final String oldPath;
+        private final String newPath;
+        private final Object value;
+
+        private PathFrame(String oldPath, String newPath, Object value) {
+            this.oldPath = oldPath;
+            this.newPath = newPath;
+            this.value = value;
+        }
+    }
+}
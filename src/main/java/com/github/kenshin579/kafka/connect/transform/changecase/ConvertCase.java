@@ -16,22 +16,19 @@
  */
 package com.github.kenshin579.kafka.connect.transform.changecase;
 
-import com.google.common.base.CaseFormat;
 import org.apache.kafka.common.cache.Cache;
 import org.apache.kafka.common.cache.LRUCache;
 import org.apache.kafka.common.cache.SynchronizedCache;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.connector.ConnectRecord;
-import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
-import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.header.Headers;
 import org.apache.kafka.connect.transforms.Transformation;
-import org.apache.kafka.connect.transforms.util.SchemaUtil;
 import org.apache.kafka.connect.transforms.util.SimpleConfig;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.util.*;
 
@@ -44,8 +41,6 @@ import static org.apache.kafka.connect.transforms.util.Requirements.requireStruc
  * @param <R>
  */
 public abstract class ConvertCase<R extends ConnectRecord<R>> implements Transformation<R> {
-    private static final Logger log = LoggerFactory.getLogger(ConvertCase.class);
-
     public static final String OVERVIEW_DOC = "Converts record field name cases";
 
     protected enum CaseType {
@@ -73,6 +68,29 @@ public abstract class ConvertCase<R extends ConnectRecord<R>> implements Transfo
         String WHITELIST = "whitelist";
         String BLACKLIST = "blacklist";
         String NOOP = "noop";
+        String RENAMES_FILE = "renames.file";
+        String PARALLEL_ARRAY_THRESHOLD = "parallel.array.threshold";
+        String PARALLEL_THREADS = "parallel.threads";
+        String SCHEMA_CACHE_SIZE = "schema.cache.size";
+        String SCHEMA_CACHE_SHARED = "schema.cache.shared";
+        String NAME_CACHE_SIZE = "name.cache.size";
+        String DATA_KEYS = "data.keys";
+        String HEADERS_CONVERT = "headers.convert";
+        String TOPIC_CONVERT = "topic.convert";
+        String METRICS_ENABLED = "metrics.enabled";
+        String METRICS_NAME = "metrics.name";
+        String TRACE_SAMPLE_RATE = "trace.sample.rate";
+        String TRACE_TOPICS = "trace.topics";
+        String TRACE_SCHEMAS = "trace.schemas";
+        String PROFILE_SAMPLE_RATE = "profile.sample.rate";
+        String PROFILE_TOP_N = "profile.top.n";
+        String PROFILE_LOG_INTERVAL_MS = "profile.log.interval.ms";
+    }
+
+    private interface DataKeys {
+        String CONVERT = "convert";
+        String UNCACHED = "uncached";
+        String KEEP = "keep";
     }
 
     public static final ConfigDef CONFIG_DEF = new ConfigDef()
@@ -99,30 +117,192 @@ public abstract class ConvertCase<R extends ConnectRecord<R>> implements Transfo
                     "",
                     ConfigDef.Importance.MEDIUM,
                     "No operation on record elements"
+            )
+            .define(ConfigName.RENAMES_FILE,
+                    ConfigDef.Type.STRING,
+                    "",
+                    ConfigDef.Importance.MEDIUM,
+                    "Path of a UTF-8 file of explicit old:new field renames, one per line. Renames take precedence over "
+                            + ConfigName.CONVERT_FROM_TO + ". The file is read once on configure, replace it atomically "
+                            + "(write a new file and rename it) rather than editing it in place"
+            )
+            .define(ConfigName.PARALLEL_ARRAY_THRESHOLD,
+                    ConfigDef.Type.INT,
+                    0,
+                    ConfigDef.Range.atLeast(0),
+                    ConfigDef.Importance.LOW,
+                    "Arrays with at least this many elements are converted in parallel. 0 disables parallel conversion"
+            )
+            .define(ConfigName.PARALLEL_THREADS,
+                    ConfigDef.Type.INT,
+                    0,
+                    ConfigDef.Range.atLeast(0),
+                    ConfigDef.Importance.LOW,
+                    "Size of the fork-join pool used for parallel conversion. 0 uses the number of available processors"
+            )
+            .define(ConfigName.SCHEMA_CACHE_SIZE,
+                    ConfigDef.Type.INT,
+                    16,
+                    ConfigDef.Range.atLeast(1),
+                    ConfigDef.Importance.LOW,
+                    "Maximum number of compiled schemas kept in the cache"
+            )
+            .define(ConfigName.SCHEMA_CACHE_SHARED,
+                    ConfigDef.Type.BOOLEAN,
+                    false,
+                    ConfigDef.Importance.LOW,
+                    "Share compiled schemas with every instance in the worker that has the same conversion rules and "
+                            + ConfigName.SCHEMA_CACHE_SIZE
+            )
+            .define(ConfigName.NAME_CACHE_SIZE,
+                    ConfigDef.Type.INT,
+                    1024,
+                    ConfigDef.Range.atLeast(0),
+                    ConfigDef.Importance.LOW,
+                    "Maximum number of converted field names remembered for schemaless records. 0 converts every name every time"
+            )
+            .define(ConfigName.DATA_KEYS,
+                    ConfigDef.Type.STRING,
+                    DataKeys.CONVERT,
+                    ConfigDef.ValidString.in(DataKeys.CONVERT, DataKeys.UNCACHED, DataKeys.KEEP),
+                    ConfigDef.Importance.LOW,
+                    "Keys of schemaless maps whose keys look like data, such as ids or timestamps. "
+                            + "convert treats them like field names, uncached converts them without the name cache, keep leaves them as they are"
+            )
+            .define(ConfigName.HEADERS_CONVERT,
+                    ConfigDef.Type.BOOLEAN,
+                    false,
+                    ConfigDef.Importance.LOW,
+                    "Convert the header keys of every record as well, with the same rules"
+            )
+            .define(ConfigName.TOPIC_CONVERT,
+                    ConfigDef.Type.BOOLEAN,
+                    false,
+                    ConfigDef.Importance.LOW,
+                    "Convert the topic name of every record as well, with the same case. Whitelist, blacklist and noop do not apply"
+            )
+            .define(ConfigName.METRICS_ENABLED,
+                    ConfigDef.Type.BOOLEAN,
+                    false,
+                    ConfigDef.Importance.LOW,
+                    "Register per topic metrics of the transform over JMX"
+            )
+            .define(ConfigName.METRICS_NAME,
+                    ConfigDef.Type.STRING,
+                    "",
+                    ConfigDef.Importance.LOW,
+                    "Value of the transform tag of the metrics, e.g. the transform alias. Defaults to the class name"
+            )
+            .define(ConfigName.TRACE_SAMPLE_RATE,
+                    ConfigDef.Type.INT,
+                    0,
+                    ConfigDef.Range.atLeast(0),
+                    ConfigDef.Importance.LOW,
+                    "Log the field name mapping of about one in this many records. 0 disables sampling"
+            )
+            .define(ConfigName.TRACE_TOPICS,
+                    ConfigDef.Type.LIST,
+                    "",
+                    ConfigDef.Importance.LOW,
+                    "Log the field name mapping of every record of these topics"
+            )
+            .define(ConfigName.TRACE_SCHEMAS,
+                    ConfigDef.Type.LIST,
+                    "",
+                    ConfigDef.Importance.LOW,
+                    "Log the field name mapping of every record with one of these schema names"
+            )
+            .define(ConfigName.PROFILE_SAMPLE_RATE,
+                    ConfigDef.Type.INT,
+                    0,
+                    ConfigDef.Range.atLeast(0),
+                    ConfigDef.Importance.LOW,
+                    "Profile the conversion cost of about one in this many records. 0 disables profiling"
+            )
+            .define(ConfigName.PROFILE_TOP_N,
+                    ConfigDef.Type.INT,
+                    10,
+                    ConfigDef.Range.atLeast(1),
+                    ConfigDef.Importance.LOW,
+                    "Number of the most expensive schemas and fields reported by the profiler"
+            )
+            .define(ConfigName.PROFILE_LOG_INTERVAL_MS,
+                    ConfigDef.Type.LONG,
+                    60000L,
+                    ConfigDef.Range.atLeast(1),
+                    ConfigDef.Importance.LOW,
+                    "Interval between profile summaries in the log"
             );
 
     private static final String PURPOSE = "convert field names from source case to destination case";
 
-    private String convertFromTo;
-    private String whitelist;
-    private String blacklist;
-    private String noop;
-    private Cache<String, Schema> schemaUpdateCache;
-    private Map<String, String> reverseRenames;
+    // A connector reads few topics, the memo only bounds unexpected ones
+    private static final int TOPIC_CACHE_SIZE = 64;
+
+    private FieldNameConverter fieldNameConverter;
+    private FieldNaming fieldNaming;
+    private boolean headersConvert;
+    private Cache<String, String> topicNames;
+    private Cache<Schema, ConversionPlan> schemaUpdateCache;
+    private ThreadLocal<ConversionEngine> conversionEngine;
+    private ParallelListConverter parallelListConverter;
+    private FieldNameConverter sharedPlanKey;
+    private int schemaCacheSize;
+    private TransformMetrics metrics;
+    private ConversionTracer tracer;
+    private ConversionProfiler profiler;
+    private int profileSampleRate;
 
     protected long schemaUpdateCacheSize() {
         return schemaUpdateCache.size();
     }
 
+    FieldNameConverter fieldNameConverter() {
+        return fieldNameConverter;
+    }
+
+    /*
+        The converter, behind the name cache unless it is disabled
+     */
+    FieldNaming fieldNaming() {
+        return fieldNaming;
+    }
+
+    /*
+        Metrics of the topic, null when metrics are disabled
+     */
+    TransformMetrics.TopicMetrics topicMetrics(String topic) {
+        return metrics == null ? null : metrics.topic(topic);
+    }
+
+    /*
+        Null when tracing is not configured
+     */
+    ConversionTracer tracer() {
+        return tracer;
+    }
+
+    /*
+        Naming of the keys of maps that look like data, null when those maps are not detected
+     */
+    private static FieldNaming dataKeyNaming(String dataKeys, FieldNameConverter converter) {
+        switch (dataKeys) {
+            case DataKeys.UNCACHED:
+                return converter;
+            case DataKeys.KEEP:
+                return (fieldName, override) -> fieldName;
+            default:
+                return null;
+        }
+    }
+
     @Override
     public void configure(Map<String, ?> map) {
         final SimpleConfig config = new SimpleConfig(CONFIG_DEF, map);
-        convertFromTo = config.getString(ConfigName.CONVERT_FROM_TO);
-        whitelist = config.getString(ConfigName.WHITELIST);
-        blacklist = config.getString(ConfigName.BLACKLIST);
-        noop = config.getString(ConfigName.NOOP);
+        final String convertFromTo = config.getString(ConfigName.CONVERT_FROM_TO);
+        final CaseType caseType = CaseType.getEnum(convertFromTo);
 
-        switch (CaseType.getEnum(convertFromTo)) {
+        switch (caseType) {
             case CAMEL2SNAKEHYPHEN:
             case CAMEL2SNAKEUNDERSCORE:
             case SNAKEUNDERSCORE2CAMEL:
@@ -134,78 +314,82 @@ public abstract class ConvertCase<R extends ConnectRecord<R>> implements Transfo
                 throw new ConfigException("There's no action related to " + ConfigName.CONVERT_FROM_TO + " `" + convertFromTo + "`");
         }
 
-        reverseRenames = new HashMap<>();
-        schemaUpdateCache = new SynchronizedCache<>(new LRUCache<>(16));
-    }
-
-    /*
-        Converts field name. If structure field noop, blacklist rule cannot be applied
-     */
-    private String convertField(String fieldName, boolean override) {
-        if (!override) { // if structure blacklist, noop, whitelist doesn't apply
-            if (isNoop(fieldName)) { // if noop send fieldname
-                return fieldName;
-            }
-            if (isBlacklist(fieldName)) { // if blacklisted
-                return null;
-            }
+        final String renamesFile = config.getString(ConfigName.RENAMES_FILE);
+        final FieldNameConverter converter = new FieldNameConverter(caseType,
+                config.getString(ConfigName.WHITELIST),
+                config.getString(ConfigName.BLACKLIST),
+                config.getString(ConfigName.NOOP),
+                renamesFile.isEmpty() ? null : RenameTable.open(renamesFile));
+        fieldNameConverter = converter;
+        final int nameCacheSize = config.getInt(ConfigName.NAME_CACHE_SIZE);
+        final FieldNaming naming = nameCacheSize == 0 ? converter : new FieldNameCache(converter, nameCacheSize);
+        fieldNaming = naming;
+        final FieldNaming dataKeyNaming = dataKeyNaming(config.getString(ConfigName.DATA_KEYS), converter);
+        headersConvert = config.getBoolean(ConfigName.HEADERS_CONVERT);
+        topicNames = config.getBoolean(ConfigName.TOPIC_CONVERT) ? new SynchronizedCache<>(new LRUCache<>(TOPIC_CACHE_SIZE)) : null;
+        tracer = ConversionTracer.create(converter,
+                config.getInt(ConfigName.TRACE_SAMPLE_RATE),
+                config.getList(ConfigName.TRACE_TOPICS),
+                config.getList(ConfigName.TRACE_SCHEMAS));
+
+        final int parallelArrayThreshold = config.getInt(ConfigName.PARALLEL_ARRAY_THRESHOLD);
+        final int parallelThreads = config.getInt(ConfigName.PARALLEL_THREADS);
+        final ParallelListConverter parallel = parallelArrayThreshold == 0 ? null : new ParallelListConverter(naming, dataKeyNaming,
+                parallelArrayThreshold, parallelThreads == 0 ? Runtime.getRuntime().availableProcessors() : parallelThreads);
+        if (parallelListConverter != null) {
+            parallelListConverter.close();
         }
-
-        String fieldName2Use = convertCase(fieldName); // Use converted field name
-        if (log.isDebugEnabled()) {
-            log.debug("Converted " + fieldName + " to " + fieldName2Use);
+        parallelListConverter = parallel;
+        conversionEngine = ThreadLocal.withInitial(() -> new ConversionEngine(naming, dataKeyNaming, parallel));
+
+        releaseSharedPlans();
+        schemaCacheSize = config.getInt(ConfigName.SCHEMA_CACHE_SIZE);
+        if (config.getBoolean(ConfigName.SCHEMA_CACHE_SHARED)) {
+            schemaUpdateCache = SharedPlanRegistry.acquire(converter, schemaCacheSize);
+            sharedPlanKey = converter;
+        } else {
+            schemaUpdateCache = new SynchronizedCache<>(new LRUCache<>(schemaCacheSize));
         }
-        return fieldName2Use;
-    }
-
-    private boolean isBlacklist(String fieldName) {
-        return !(!blacklist.contains(fieldName) && (whitelist.isEmpty() || whitelist.contains(fieldName)));
-    }
 
-    private boolean isNoop(String fieldName) {
-        return !noop.isEmpty() && noop.contains(fieldName);
+        final String metricsName = config.getString(ConfigName.METRICS_NAME).isEmpty()
+                ? getClass().getName().substring(getClass().getName().lastIndexOf('.') + 1)
+                : config.getString(ConfigName.METRICS_NAME);
+        closeMetrics();
+        if (config.getBoolean(ConfigName.METRICS_ENABLED)) {
+            metrics = TransformMetrics.register("convert-case-metrics", metricsName);
+        }
+        profileSampleRate = config.getInt(ConfigName.PROFILE_SAMPLE_RATE);
+        if (profileSampleRate > 0) {
+            profiler = ConversionProfiler.acquire(metricsName,
+                    config.getInt(ConfigName.PROFILE_TOP_N), config.getLong(ConfigName.PROFILE_LOG_INTERVAL_MS));
+        }
     }
 
-    /*
-        Reverse lookup for converted field names
-     */
-    private String reverseConverted(String fieldName) {
-        final String mapping = reverseRenames.get(fieldName);
-        return mapping == null ? fieldName : mapping;
+    private void closeMetrics() {
+        if (metrics != null) {
+            metrics.close();
+            metrics = null;
+        }
+        if (profiler != null) {
+            profiler.release();
+            profiler = null;
+        }
     }
 
-    /*
-        Convert case based on conversion rule
-     */
-    private String convertCase(String value) {
-        String retValue = value;
-        switch (CaseType.getEnum(convertFromTo)) {
-            case CAMEL2SNAKEUNDERSCORE:
-                retValue = value != null ? CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, value) : null;
-                break;
-            case CAMEL2SNAKEHYPHEN:
-                retValue = value != null ? CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_HYPHEN, value) : null;
-                break;
-            case SNAKEUNDERSCORE2CAMEL:
-                retValue = value != null ? CaseFormat.LOWER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, value) : null;
-                break;
-            case SNAKEHYPHEN2CAMEL:
-                retValue = value != null ? CaseFormat.LOWER_HYPHEN.to(CaseFormat.LOWER_CAMEL, value) : null;
-                break;
-            case UPPERCASE:
-                retValue = value != null ? value.toUpperCase() : null;
-                break;
-            case LOWERCASE:
-                retValue = value != null ? value.toLowerCase() : null;
-                break;
+    private void releaseSharedPlans() {
+        if (sharedPlanKey != null) {
+            SharedPlanRegistry.release(sharedPlanKey, schemaCacheSize);
+            sharedPlanKey = null;
         }
-        return retValue;
     }
 
     @Override
     public R apply(R record) {
         if (operatingValue(record) == null) {
-            return record;
+            if (metrics != null) {
+                metrics.topic(record.topic()).recordPassthrough();
+            }
+            return unchanged(record);
         } else if (operatingSchema(record) == null) {
             return applySchemaless(record);
         } else {
@@ -217,43 +401,69 @@ public abstract class ConvertCase<R extends ConnectRecord<R>> implements Transfo
         Create record without schema applying conversion rule
      */
     private R applySchemaless(R record) {
-        final Map<String, Object> value = requireMap(operatingValue(record), PURPOSE);
-        final Map<String, Object> updatedValue = applySchemaless(value);
-        return newRecord(record, null, updatedValue);
+        return applySchemaless(record, requireMap(operatingValue(record), PURPOSE), null);
     }
 
     /*
-        Create new schema less object based on conversion rules
+        Converts the map as if the extra fields were put into it first, without copying it for them.
+        extraFields is null when there are none
      */
-    private Map<String, Object> applySchemaless(Map<String, Object> originalValue) {
-        final Map<String, Object> updatedValue = new HashMap<>();
-
-        originalValue.forEach((k, v) -> {
-            boolean structField = v instanceof Map || v instanceof List;
-            String fieldName2Use = convertField(k, structField);
-            if (structField) {
-                if (v instanceof Map) {
-                    final Map v1 = applySchemaless((Map) v);
-                    updatedValue.put(fieldName2Use, v1);
-                } else {
-                    List valueList = new ArrayList();
-                    ((List) v).forEach(e -> {
-                        if (e instanceof Map) {
-                            final Object object = applySchemaless((Map) e);
-                            valueList.add(object);
-                        } else { //string
-                            valueList.add(e);
-                        }
-                    });
-                    updatedValue.put(fieldName2Use, valueList);
-                }
+    R applySchemaless(R record, Map<String, Object> value, Map<String, Object> extraFields) {
+        final TransformMetrics.TopicMetrics topicMetrics = metrics == null ? null : metrics.topic(record.topic());
+        return newRecord(record, convertTopic(record), null,
+                convertMap(record.topic(), value, extraFields, conversionEngine.get(), topicMetrics), convertHeaders(record));
+    }
+
+    private Map<String, Object> convertMap(String topic, Map<String, Object> value, Map<String, Object> extraFields,
+                                           ConversionEngine engine, TransformMetrics.TopicMetrics topicMetrics) {
+        final boolean profiled = profiler != null && ConversionProfiler.sampled(profileSampleRate);
+        final String schemaKey = profiled ? ConversionProfiler.schemaKey(topic, null) : null;
+        if (profiler != null) {
+            engine.profile(schemaKey);
+        }
+        final long startBytes = profiled ? ConversionProfiler.allocatedBytes() : 0L;
+        final long start = topicMetrics == null && !profiled ? 0L : engine.startRecord();
+        final Map<String, Object> updatedValue = engine.convertMap(value);
+        if (extraFields != null) {
+            putExtraFields(engine, value, updatedValue, extraFields);
+        }
+        final long latency = System.nanoTime() - start;
+        if (topicMetrics != null) {
+            topicMetrics.recordSchemaless(latency, engine.fieldsConverted(), engine.fieldsDropped());
+        }
+        if (profiled) {
+            profiler.profile(schemaKey, latency, ConversionProfiler.allocatedBytes() - startBytes, engine.fieldCosts());
+            engine.profile(null);
+        }
+        if (tracer != null && tracer.sampled(topic, null)) {
+            tracer.trace(topic, null, value);
+        }
+        return updatedValue;
+    }
+
+    /*
+        Extra fields replace the map entries of the same name, then are converted like any other entry
+     */
+    @SuppressWarnings("unchecked")
+    private void putExtraFields(ConversionEngine engine, Map<String, Object> value, Map<String, Object> updatedValue,
+                                Map<String, Object> extraFields) {
+        for (Map.Entry<String, Object> entry : extraFields.entrySet()) {
+            if (value.containsKey(entry.getKey())) {
+                final Object replaced = value.get(entry.getKey());
+                updatedValue.remove(fieldNaming.convertField(entry.getKey(), replaced instanceof Map || replaced instanceof List));
+            }
+            final Object extraValue = entry.getValue();
+            if (extraValue instanceof Map) {
+                updatedValue.put(fieldNaming.convertField(entry.getKey(), true), engine.convertMap((Map<String, Object>) extraValue));
+            } else if (extraValue instanceof List) {
+                updatedValue.put(fieldNaming.convertField(entry.getKey(), true), engine.convertSchemalessList((List<?>) extraValue));
             } else {
+                final String fieldName2Use = fieldNaming.convertField(entry.getKey(), false);
                 if (fieldName2Use != null) {
-                    updatedValue.put(fieldName2Use, v);
+                    updatedValue.put(fieldName2Use, extraValue);
                 }
             }
-        });
-        return updatedValue;
+        }
     }
 
     /*
@@ -261,103 +471,228 @@ public abstract class ConvertCase<R extends ConnectRecord<R>> implements Transfo
      */
     private R applyWithSchema(R record) {
         final Struct value = requireStruct(operatingValue(record), PURPOSE);
+        final TransformMetrics.TopicMetrics topicMetrics = metrics == null ? null : metrics.topic(record.topic());
+        final ConversionPlan plan = resolvePlan(value.schema(), topicMetrics);
 
-        final String hashCode = String.valueOf(value.schema().hashCode());
-        // System.out.println("Schema " + hashCode);
+        return convertWithSchema(record, plan, value.schema(), value, null, conversionEngine.get(), topicMetrics);
+    }
 
-        Schema updatedSchema = schemaUpdateCache.get(hashCode);
-        if (updatedSchema == null) {
-            updatedSchema = makeUpdatedSchema(value.schema());
-            schemaUpdateCache.put(hashCode, updatedSchema);
-        }
+    /*
+        Converts the value as if it had the schema extendedSchema, the value schema followed by extra fields
+        with extraValues. The intermediate value is never built
+     */
+    R applyWithSchema(R record, Struct value, Schema extendedSchema, Object[] extraValues) {
+        final TransformMetrics.TopicMetrics topicMetrics = metrics == null ? null : metrics.topic(record.topic());
+        final ConversionPlan plan = resolvePlan(extendedSchema, topicMetrics);
 
-        final Struct updatedValue = applyWithSchema(updatedSchema, value);
-        return newRecord(record, updatedSchema, updatedValue);
+        return convertWithSchema(record, plan, extendedSchema, value, extraValues, conversionEngine.get(), topicMetrics);
     }
 
     /*
-        Create updated value based on the converted schema
+        schema is the schema the plan was compiled from, extraValues is null unless it extends the value schema
      */
-    private Struct applyWithSchema(Schema schema, Struct originalValue) {
-        final Struct value = new Struct(schema);
-        final StringBuilder valuePresent = new StringBuilder("");
-
-        schema.fields().forEach(field -> {
-            String fieldName = field.name();
-            String originalFieldName = reverseConverted(fieldName);
-
-            if (field.schema().type() == Schema.Type.STRUCT) {
-                final Struct v1 = applyWithSchema(field.schema(), originalValue.getStruct(originalFieldName));
-                if (v1 != null) {
-                    valuePresent.append("1");
-                    value.put(field.name(), v1);
-                }
-            } else if (field.schema().type() == Schema.Type.ARRAY) {
-                List originalList = originalValue.getArray(originalFieldName);
-                List valueList = new ArrayList();
-                originalList.forEach(originalElement -> {
-                    final Struct v1Value = applyWithSchema(field.schema().valueSchema(), (Struct) originalElement);
-                    if (v1Value != null) {
-                        valuePresent.append("1");
-                        valueList.add(v1Value);
-                    }
-                });
-                value.put(field.name(), valueList);
-                valuePresent.append("1");
+    private R convertWithSchema(R record, ConversionPlan plan, Schema schema, Struct value, Object[] extraValues,
+                                ConversionEngine engine, TransformMetrics.TopicMetrics topicMetrics) {
+        return newRecord(record, convertTopic(record), plan.schema(),
+                convertStruct(record.topic(), plan, schema, value, extraValues, engine, topicMetrics), convertHeaders(record));
+    }
+
+    private Struct convertStruct(String topic, ConversionPlan plan, Schema schema, Struct value, Object[] extraValues,
+                                 ConversionEngine engine, TransformMetrics.TopicMetrics topicMetrics) {
+        final boolean profiled = profiler != null && ConversionProfiler.sampled(profileSampleRate);
+        final String schemaKey = profiled ? ConversionProfiler.schemaKey(topic, value.schema()) : null;
+        if (profiler != null) {
+            engine.profile(schemaKey);
+        }
+        final long startBytes = profiled ? ConversionProfiler.allocatedBytes() : 0L;
+        final long start = topicMetrics == null && !profiled ? 0L : engine.startRecord();
+        final Struct updatedValue = extraValues == null ? engine.convertStruct(plan, value) : engine.convertStruct(plan, value, extraValues);
+        final long latency = System.nanoTime() - start;
+        if (topicMetrics != null) {
+            topicMetrics.recordSchema(latency, engine.fieldsConverted(), engine.fieldsDropped());
+        }
+        if (profiled) {
+            profiler.profile(schemaKey, latency, ConversionProfiler.allocatedBytes() - startBytes, engine.fieldCosts());
+            engine.profile(null);
+        }
+        if (tracer != null && tracer.sampled(topic, schema)) {
+            tracer.trace(topic, schema, value);
+        }
+        return updatedValue;
+    }
+
+    /*
+        Converts a Struct or Map key and the value with the same plans and name cache, then creates a single record.
+        Keys of other types are kept as they are. The record is measured once, with the fields of both sides
+     */
+    @SuppressWarnings("unchecked")
+    R applyKeyAndValue(R record) {
+        final TransformMetrics.TopicMetrics topicMetrics = metrics == null ? null : metrics.topic(record.topic());
+        final ConversionEngine engine = conversionEngine.get();
+        final long start = topicMetrics == null ? 0L : engine.startRecord();
+        boolean converted = false;
+        boolean withSchema = false;
+
+        Schema updatedKeySchema = record.keySchema();
+        Object updatedKey = record.key();
+        if (updatedKey instanceof Struct && updatedKeySchema != null) {
+            final Struct key = (Struct) updatedKey;
+            final ConversionPlan plan = resolvePlan(key.schema(), topicMetrics);
+            updatedKey = convertStruct(record.topic(), plan, key.schema(), key, null, engine, null);
+            updatedKeySchema = plan.schema();
+            converted = true;
+            withSchema = true;
+        } else if (updatedKey instanceof Map && updatedKeySchema == null) {
+            updatedKey = convertMap(record.topic(), (Map<String, Object>) updatedKey, null, engine, null);
+            converted = true;
+        }
+        long fieldsConverted = engine.fieldsConverted();
+        long fieldsDropped = engine.fieldsDropped();
+
+        Schema updatedValueSchema = record.valueSchema();
+        Object updatedValue = record.value();
+        if (updatedValue != null) {
+            if (topicMetrics != null) {
+                engine.startRecord();
+            }
+            if (updatedValueSchema == null) {
+                updatedValue = convertMap(record.topic(), requireMap(updatedValue, PURPOSE), null, engine, null);
+                withSchema = false;
             } else {
-                if (originalValue != null) { // optional field and its children
-                    final Object fieldValue = originalValue.get(originalFieldName);
-                    if (fieldValue != null) {
-                        value.put(field.name(), fieldValue);
-                        valuePresent.append("1");
-                    }
-                }
+                final Struct value = requireStruct(updatedValue, PURPOSE);
+                final ConversionPlan plan = resolvePlan(value.schema(), topicMetrics);
+                updatedValue = convertStruct(record.topic(), plan, value.schema(), value, null, engine, null);
+                updatedValueSchema = plan.schema();
+                withSchema = true;
             }
-        });
-        if (valuePresent.length() < 1) {
-            return null;
+            converted = true;
+            fieldsConverted += engine.fieldsConverted();
+            fieldsDropped += engine.fieldsDropped();
         }
 
-        return value;
+        if (topicMetrics != null) {
+            if (!converted) {
+                topicMetrics.recordPassthrough();
+            } else if (withSchema) {
+                topicMetrics.recordSchema(System.nanoTime() - start, fieldsConverted, fieldsDropped);
+            } else {
+                topicMetrics.recordSchemaless(System.nanoTime() - start, fieldsConverted, fieldsDropped);
+            }
+        }
+
+        final String updatedTopic = convertTopic(record);
+        final Headers updatedHeaders = convertHeaders(record);
+        if (updatedKey == record.key() && updatedValue == record.value() && Objects.equals(updatedTopic, record.topic()) && updatedHeaders == null) {
+            return record;
+        }
+        return record.newRecord(updatedTopic, record.kafkaPartition(), updatedKeySchema, updatedKey,
+                updatedValueSchema, updatedValue, record.timestamp(), updatedHeaders == null ? record.headers().duplicate() : updatedHeaders);
     }
 
     /*
-        Create a new schema applying the conversion rules
+        Headers with converted keys, or null when headers are not converted or no key changes.
+        Headers whose key is blacklisted are dropped like fields
      */
-    private Schema makeUpdatedSchema(Schema schema) {
-        List<Field> fields;
+    Headers convertHeaders(R record) {
+        if (!headersConvert) {
+            return null;
+        }
+        boolean changed = false;
+        for (Header header : record.headers()) {
+            if (!header.key().equals(fieldNaming.convertField(header.key(), false))) {
+                changed = true;
+                break;
+            }
+        }
+        if (!changed) {
+            return null;
+        }
+        final Headers updatedHeaders = new ConnectHeaders();
+        for (Header header : record.headers()) {
+            final String key = fieldNaming.convertField(header.key(), false);
+            if (key != null) {
+                updatedHeaders.add(key.equals(header.key()) ? header : header.rename(key));
+            }
+        }
+        return updatedHeaders;
+    }
 
-        final SchemaBuilder builder = SchemaUtil.copySchemaBasics(schema, SchemaBuilder.struct());
-        if (schema.type() == Schema.Type.ARRAY) {
-            fields = schema.valueSchema().fields();
-        } else {
-            fields = schema.fields();
+    /*
+        Converted topic name, remembered per topic. The topic itself when topics are not converted
+     */
+    String convertTopic(R record) {
+        final String topic = record.topic();
+        if (topicNames == null || topic == null) {
+            return topic;
         }
+        String updatedTopic = topicNames.get(topic);
+        if (updatedTopic == null) {
+            updatedTopic = fieldNameConverter.convertCase(topic);
+            topicNames.put(topic, updatedTopic);
+        }
+        return updatedTopic;
+    }
 
-        fields.forEach(field -> {
-            final String fieldName = field.name();
-            boolean structField = field.schema().type() == Schema.Type.STRUCT || field.schema().type() == Schema.Type.ARRAY;
+    /*
+        The record itself, or a copy with converted topic and headers when one of them changes
+     */
+    R unchanged(R record) {
+        final String updatedTopic = convertTopic(record);
+        final Headers updatedHeaders = convertHeaders(record);
+        if (updatedHeaders == null && Objects.equals(updatedTopic, record.topic())) {
+            return record;
+        }
+        return newRecord(record, updatedTopic, operatingSchema(record), operatingValue(record), updatedHeaders);
+    }
 
-            String fieldName2Use = convertField(fieldName, structField);
-            if (field.schema().type() == Schema.Type.STRUCT || field.schema().type() == Schema.Type.ARRAY) {  // Recurse on struct field
-                assert fieldName2Use != null;
-                Schema innerSchema = makeUpdatedSchema(field.schema());
-                builder.field(fieldName2Use, innerSchema).optional();
-                reverseRenames.put(fieldName2Use, fieldName);
-            } else {
-                if (fieldName2Use != null) {
-                    builder.field(fieldName2Use, field.schema());
-                    reverseRenames.put(fieldName2Use, fieldName);
-                }
+    /*
+        Cached plan of the schema, compiled on first use
+     */
+    private ConversionPlan resolvePlan(Schema schema, TransformMetrics.TopicMetrics topicMetrics) {
+        ConversionPlan plan = schemaUpdateCache.get(schema);
+        if (plan == null) {
+            final long start = System.nanoTime();
+            plan = ConversionPlan.compile(schema, fieldNameConverter);
+            if (topicMetrics != null) {
+                topicMetrics.recordCacheMiss(schemaUpdateCache.size() >= schemaCacheSize);
+                topicMetrics.recordCompile(System.nanoTime() - start);
             }
-        });
+            schemaUpdateCache.put(schema, plan);
+        } else if (topicMetrics != null) {
+            topicMetrics.recordCacheHit();
+        }
+        return plan;
+    }
 
-        SchemaBuilder builder1 = builder;
-        if (schema.type() == Schema.Type.ARRAY) {
-            Schema schema1 = builder1.optional().build();
-            builder1 = SchemaUtil.copySchemaBasics(schema, SchemaBuilder.array(schema1));
+    /**
+     * Converts a batch of records, e.g. from a custom sink task or an embedded consumer.
+     * Consecutive records sharing a schema are converted with the plan resolved once for the group.
+     * The result is the same as calling {@link #apply(ConnectRecord)} on each record.
+     *
+     * @param records records to convert
+     * @return converted records, in the same order
+     */
+    public List<R> applyAll(List<R> records) {
+        final List<R> updatedRecords = new ArrayList<>(records.size());
+        final ConversionEngine engine = conversionEngine.get();
+
+        Schema groupSchema = null;
+        ConversionPlan plan = null;
+        for (R record : records) {
+            final Object value = operatingValue(record);
+            if (value instanceof Struct && operatingSchema(record) != null) {
+                final Struct struct = (Struct) value;
+                final TransformMetrics.TopicMetrics topicMetrics = metrics == null ? null : metrics.topic(record.topic());
+                if (struct.schema() != groupSchema) {
+                    groupSchema = struct.schema();
+                    plan = resolvePlan(groupSchema, topicMetrics);
+                }
+                updatedRecords.add(convertWithSchema(record, plan, groupSchema, struct, null, engine, topicMetrics));
+            } else {
+                updatedRecords.add(apply(record));
+            }
         }
-        return builder1.optional().build();
+        return updatedRecords;
     }
 
     @Override
@@ -367,7 +702,14 @@ public abstract class ConvertCase<R extends ConnectRecord<R>> implements Transfo
 
     @Override
     public void close() {
+        releaseSharedPlans();
+        closeMetrics();
         schemaUpdateCache = null;
+        conversionEngine = null;
+        if (parallelListConverter != null) {
+            parallelListConverter.close();
+            parallelListConverter = null;
+        }
     }
 
     protected abstract Schema operatingSchema(R record);
@@ -376,6 +718,20 @@ public abstract class ConvertCase<R extends ConnectRecord<R>> implements Transfo
 
     protected abstract R newRecord(R record, Schema updatedSchema, Object updatedValue);
 
+    /**
+     * Like {@link #newRecord(ConnectRecord, Schema, Object)} with the converted topic and headers, null when the headers are kept.
+     * Override to create the record in one step, the default copies the new record once more for the topic and headers.
+     */
+    protected R newRecord(R record, String updatedTopic, Schema updatedSchema, Object updatedValue, Headers updatedHeaders) {
+        final R updatedRecord = newRecord(record, updatedSchema, updatedValue);
+        if (updatedHeaders == null && Objects.equals(updatedTopic, updatedRecord.topic())) {
+            return updatedRecord;
+        }
+        return updatedRecord.newRecord(updatedTopic, updatedRecord.kafkaPartition(), updatedRecord.keySchema(), updatedRecord.key(),
+                updatedRecord.valueSchema(), updatedRecord.value(), updatedRecord.timestamp(),
+                updatedHeaders == null ? updatedRecord.headers() : updatedHeaders);
+    }
+
     /**
      * Use this for converting record Key fields
      *
@@ -396,6 +752,59 @@ public abstract class ConvertCase<R extends ConnectRecord<R>> implements Transfo
         protected R newRecord(R record, Schema updatedSchema, Object updatedValue) {
             return record.newRecord(record.topic(), record.kafkaPartition(), updatedSchema, updatedValue, record.valueSchema(), record.value(), record.timestamp());
         }
+
+        @Override
+        protected R newRecord(R record, String updatedTopic, Schema updatedSchema, Object updatedValue, Headers updatedHeaders) {
+            if (updatedHeaders == null) {
+                return record.newRecord(updatedTopic, record.kafkaPartition(), updatedSchema, updatedValue, record.valueSchema(), record.value(), record.timestamp());
+            }
+            return record.newRecord(updatedTopic, record.kafkaPartition(), updatedSchema, updatedValue, record.valueSchema(), record.value(), record.timestamp(), updatedHeaders);
+        }
+    }
+
+    /**
+     * Use this for converting record Key and Value fields in one transform. Both sides share the schema and
+     * name caches and a single new record is created. Keys that are neither a Struct nor a Map are kept as they are
+     *
+     * @param <R>
+     */
+    public static class KeyAndValue<R extends ConnectRecord<R>> extends ConvertCase<R> {
+        @Override
+        public R apply(R record) {
+            return applyKeyAndValue(record);
+        }
+
+        @Override
+        public List<R> applyAll(List<R> records) {
+            final List<R> updatedRecords = new ArrayList<>(records.size());
+            for (R record : records) {
+                updatedRecords.add(apply(record));
+            }
+            return updatedRecords;
+        }
+
+        @Override
+        protected Schema operatingSchema(R record) {
+            return record.valueSchema();
+        }
+
+        @Override
+        protected Object operatingValue(R record) {
+            return record.value();
+        }
+
+        @Override
+        protected R newRecord(R record, Schema updatedSchema, Object updatedValue) {
+            return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp());
+        }
+
+        @Override
+        protected R newRecord(R record, String updatedTopic, Schema updatedSchema, Object updatedValue, Headers updatedHeaders) {
+            if (updatedHeaders == null) {
+                return record.newRecord(updatedTopic, record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp());
+            }
+            return record.newRecord(updatedTopic, record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp(), updatedHeaders);
+        }
     }
 
     /**
@@ -418,5 +827,13 @@ public abstract class ConvertCase<R extends ConnectRecord<R>> implements Transfo
         protected R newRecord(R record, Schema updatedSchema, Object updatedValue) {
             return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp());
         }
+
+        @Override
+        protected R newRecord(R record, String updatedTopic, Schema updatedSchema, Object updatedValue, Headers updatedHeaders) {
+            if (updatedHeaders == null) {
+                return record.newRecord(updatedTopic, record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp());
+            }
+            return record.newRecord(updatedTopic, record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp(), updatedHeaders);
+        }
     }
 }
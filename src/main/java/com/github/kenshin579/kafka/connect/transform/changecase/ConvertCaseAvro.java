@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.avro.Schema.Field;
+import org.apache.kafka.common.cache.Cache;
+import org.apache.kafka.common.cache.LRUCache;
+import org.apache.kafka.common.cache.SynchronizedCache;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.errors.RetriableException;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts field name cases of Confluent-framed Avro KEY and VALUE, as produced by ByteArrayConverter.
+ * Renaming fields does not change the Avro binary encoding, so only the writer schema is rewritten:
+ * the schema ID in the record header is swapped for the ID of the converted schema and the payload is copied as is.
+ * Original field names are kept as aliases of the renamed fields.
+ * Struct and Map records are handled the same way as {@link ConvertCase}.
+ *
+ * @param <R>
+ */
+public abstract class ConvertCaseAvro<R extends ConnectRecord<R>> extends ConvertCase<R> {
+
+    public static final String OVERVIEW_DOC = "Converts Avro field name cases by swapping the registered writer schema";
+
+    private interface ConfigName {
+        String SCHEMA_REGISTRY_URL = "schema.registry.url";
+        String SUBJECT_SUFFIX = "schema.subject.suffix";
+    }
+
+    public static final ConfigDef CONFIG_DEF = new ConfigDef(ConvertCase.CONFIG_DEF)
+            .define(ConfigName.SCHEMA_REGISTRY_URL,
+                    ConfigDef.Type.LIST,
+                    ConfigDef.NO_DEFAULT_VALUE,
+                    (name, value) -> {
+                        if (value == null || ((List<?>) value).isEmpty()) {
+                            throw new ConfigException(name, value, "At least one schema registry URL is required");
+                        }
+                    },
+                    ConfigDef.Importance.HIGH,
+                    "Comma-separated schema registry URLs"
+            )
+            .define(ConfigName.SUBJECT_SUFFIX,
+                    ConfigDef.Type.STRING,
+                    "-converted",
+                    ConfigDef.Importance.LOW,
+                    "Suffix appended to the <topic>-key or <topic>-value subject the converted schemas are registered under"
+            );
+
+    private static final byte MAGIC_BYTE = 0x0;
+    private static final int HEADER_SIZE = 5;
+
+    private SchemaRegistry schemaRegistry;
+    private String subjectSuffix;
+    private Cache<Integer, Integer> schemaIdCache;
+
+    @Override
+    public void configure(Map<String, ?> map) {
+        super.configure(map);
+        final SimpleConfig config = new SimpleConfig(CONFIG_DEF, map);
+
+        if (fieldNameConverter().dropsFields()) {
+            throw new ConfigException("whitelist and blacklist change the Avro encoding and cannot be used with " + getClass().getName());
+        }
+        if (fieldNameConverter().caseType() == CaseType.CAMEL2SNAKEHYPHEN) {
+            throw new ConfigException("camel2snakehyphen does not produce valid Avro field names");
+        }
+
+        schemaRegistry = SchemaRegistry.forUrls(config.getList(ConfigName.SCHEMA_REGISTRY_URL));
+        subjectSuffix = config.getString(ConfigName.SUBJECT_SUFFIX);
+        schemaIdCache = new SynchronizedCache<>(new LRUCache<>(16));
+    }
+
+    /*
+        Replaces the registry of the configured URLs, e.g. with an in-process one in tests
+     */
+    void schemaRegistry(SchemaRegistry schemaRegistry) {
+        this.schemaRegistry = schemaRegistry;
+    }
+
+    @Override
+    public R apply(R record) {
+        final Object value = operatingValue(record);
+        if (!(value instanceof byte[])) {
+            return super.apply(record);
+        }
+
+        final byte[] bytes = (byte[]) value;
+        if (bytes.length < HEADER_SIZE || bytes[0] != MAGIC_BYTE) {
+            throw new DataException("Unknown magic byte, expected Confluent framed Avro");
+        }
+        final int schemaId = ((bytes[1] & 0xff) << 24) | ((bytes[2] & 0xff) << 16) | ((bytes[3] & 0xff) << 8) | (bytes[4] & 0xff);
+
+        Integer convertedId = schemaIdCache.get(schemaId);
+        if (convertedId == null) {
+            convertedId = registerConverted(record.topic(), schemaId);
+            schemaIdCache.put(schemaId, convertedId);
+        }
+        if (convertedId == schemaId) {
+            return unchanged(record);
+        }
+
+        final byte[] updatedValue = bytes.clone();
+        updatedValue[1] = (byte) (convertedId >>> 24);
+        updatedValue[2] = (byte) (convertedId >>> 16);
+        updatedValue[3] = (byte) (convertedId >>> 8);
+        updatedValue[4] = (byte) (int) convertedId;
+        return newRecord(record, convertTopic(record), operatingSchema(record), updatedValue, convertHeaders(record));
+    }
+
+    /*
+        Fetches the writer schema, converts its field names and registers the result
+     */
+    private int registerConverted(String topic, int schemaId) {
+        try {
+            final org.apache.avro.Schema original = schemaRegistry.getById(schemaId);
+            final org.apache.avro.Schema converted = convertSchema(original, new IdentityHashMap<>());
+            return converted.equals(original) ? schemaId : schemaRegistry.register(subject(topic) + subjectSuffix, converted);
+        } catch (IOException e) {
+            throw new RetriableException("Schema registry is not available", e);
+        } catch (org.apache.avro.AvroRuntimeException e) {
+            throw new DataException("Unable to convert field names of schema " + schemaId, e);
+        }
+    }
+
+    /*
+        Create a new Avro schema applying the conversion rules. Named types are converted once
+     */
+    private org.apache.avro.Schema convertSchema(org.apache.avro.Schema schema, Map<org.apache.avro.Schema, org.apache.avro.Schema> converted) {
+        final org.apache.avro.Schema existing = converted.get(schema);
+        if (existing != null) {
+            return existing;
+        }
+
+        final org.apache.avro.Schema updatedSchema;
+        switch (schema.getType()) {
+            case RECORD:
+                updatedSchema = org.apache.avro.Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError());
+                schema.getAliases().forEach(updatedSchema::addAlias);
+                converted.put(schema, updatedSchema);
+
+                final List<Field> fields = new ArrayList<>();
+                for (Field field : schema.getFields()) {
+                    final String fieldName2Use = fieldNameConverter().convertField(field.name(), isStructField(field.schema()));
+                    final Field updatedField = new Field(fieldName2Use, convertSchema(field.schema(), converted),
+                            field.doc(), field.defaultVal(), field.order());
+                    field.aliases().forEach(updatedField::addAlias);
+                    if (!fieldName2Use.equals(field.name())) {
+                        updatedField.addAlias(field.name());
+                    }
+                    updatedField.addAllProps(field);
+                    fields.add(updatedField);
+                }
+                updatedSchema.setFields(fields);
+                break;
+            case ARRAY:
+                updatedSchema = org.apache.avro.Schema.createArray(convertSchema(schema.getElementType(), converted));
+                break;
+            case MAP:
+                updatedSchema = org.apache.avro.Schema.createMap(convertSchema(schema.getValueType(), converted));
+                break;
+            case UNION:
+                final List<org.apache.avro.Schema> types = new ArrayList<>();
+                for (org.apache.avro.Schema type : schema.getTypes()) {
+                    types.add(convertSchema(type, converted));
+                }
+                updatedSchema = org.apache.avro.Schema.createUnion(types);
+                break;
+            default:
+                return schema;
+        }
+        updatedSchema.addAllProps(schema);
+        converted.put(schema, updatedSchema);
+        return updatedSchema;
+    }
+
+    /*
+        Records and arrays, optional or not, are always converted like Struct and Array fields
+     */
+    private static boolean isStructField(org.apache.avro.Schema schema) {
+        switch (schema.getType()) {
+            case RECORD:
+            case ARRAY:
+                return true;
+            case UNION:
+                for (org.apache.avro.Schema type : schema.getTypes()) {
+                    if (type.getType() == org.apache.avro.Schema.Type.RECORD || type.getType() == org.apache.avro.Schema.Type.ARRAY) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public ConfigDef config() {
+        return CONFIG_DEF;
+    }
+
+    /*
+        Subject of the original schema, following the default topic name strategy
+     */
+    protected abstract String subject(String topic);
+
+    /**
+     * Use this for converting Avro record Key fields
+     *
+     * @param <R>
+     */
+    public static class Key<R extends ConnectRecord<R>> extends ConvertCaseAvro<R> {
+        @Override
+        protected org.apache.kafka.connect.data.Schema operatingSchema(R record) {
+            return record.keySchema();
+        }
+
+        @Override
+        protected Object operatingValue(R record) {
+            return record.key();
+        }
+
+        @Override
+        protected R newRecord(R record, org.apache.kafka.connect.data.Schema updatedSchema, Object updatedValue) {
+            return record.newRecord(record.topic(), record.kafkaPartition(), updatedSchema, updatedValue, record.valueSchema(), record.value(), record.timestamp());
+        }
+
+        @Override
+        protected String subject(String topic) {
+            return topic + "-key";
+        }
+    }
+
+    /**
+     * Use this for converting Avro record Value fields
+     *
+     * @param <R>
+     */
+    public static class Value<R extends ConnectRecord<R>> extends ConvertCaseAvro<R> {
+        @Override
+        protected org.apache.kafka.connect.data.Schema operatingSchema(R record) {
+            return record.valueSchema();
+        }
+
+        @Override
+        protected Object operatingValue(R record) {
+            return record.value();
+        }
+
+        @Override
+        protected R newRecord(R record, org.apache.kafka.connect.data.Schema updatedSchema, Object updatedValue) {
+            return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp());
+        }
+
+        @Override
+        protected String subject(String topic) {
+            return topic + "-value";
+        }
+    }
+}
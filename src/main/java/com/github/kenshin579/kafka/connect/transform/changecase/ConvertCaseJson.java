@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.data.Schema;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Converts object key cases of raw JSON KEY and VALUE, as produced by ByteArrayConverter or StringConverter.
+ * Keys are rewritten directly in the UTF-8 bytes and values are copied through verbatim.
+ * Payloads are only rewritten when they hold a JSON object or array, scalars and other text pass through unchanged.
+ * Struct and Map records are handled the same way as {@link ConvertCase}.
+ *
+ * @param <R>
+ */
+public abstract class ConvertCaseJson<R extends ConnectRecord<R>> extends ConvertCase<R> {
+
+    public static final String OVERVIEW_DOC = "Converts object key cases of raw JSON byte[] and String records";
+
+    @Override
+    public R apply(R record) {
+        final Object value = operatingValue(record);
+        if (!(value instanceof byte[]) && !(value instanceof String)) {
+            return super.apply(record);
+        }
+        final TransformMetrics.TopicMetrics topicMetrics = topicMetrics(record.topic());
+        final boolean objectOrArray = value instanceof byte[] ? isObjectOrArray((byte[]) value) : isObjectOrArray((String) value);
+        if (!objectOrArray) {
+            if (topicMetrics != null) {
+                topicMetrics.recordPassthrough();
+            }
+            return unchanged(record);
+        }
+
+        final byte[] json = value instanceof byte[] ? (byte[]) value : ((String) value).getBytes(StandardCharsets.UTF_8);
+        final ConversionTracer tracer = tracer();
+        final Map<String, String> mapping = tracer != null && tracer.sampled(record.topic(), null) ? new LinkedHashMap<>() : null;
+        final long start = topicMetrics == null ? 0L : System.nanoTime();
+        final JsonKeyRewriter rewriter = new JsonKeyRewriter(fieldNaming(), json, mapping);
+        final byte[] updatedJson = rewriter.rewrite();
+        if (topicMetrics != null) {
+            topicMetrics.recordSchemaless(System.nanoTime() - start, rewriter.fieldsConverted(), rewriter.fieldsDropped());
+        }
+        if (mapping != null) {
+            tracer.trace(record.topic(), mapping);
+        }
+        if (updatedJson == json) {
+            return unchanged(record);
+        }
+        final Object updatedValue = value instanceof byte[] ? updatedJson : new String(updatedJson, StandardCharsets.UTF_8);
+        return newRecord(record, convertTopic(record), operatingSchema(record), updatedValue, convertHeaders(record));
+    }
+
+    /*
+        True when the first character after JSON whitespace opens an object or an array
+     */
+    private static boolean isObjectOrArray(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c == '{' || c == '[';
+            }
+        }
+        return false;
+    }
+
+    private static boolean isObjectOrArray(byte[] value) {
+        for (byte b : value) {
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return b == '{' || b == '[';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Use this for converting raw JSON record Key
+     *
+     * @param <R>
+     */
+    public static class Key<R extends ConnectRecord<R>> extends ConvertCaseJson<R> {
+        @Override
+        protected Schema operatingSchema(R record) {
+            return record.keySchema();
+        }
+
+        @Override
+        protected Object operatingValue(R record) {
+            return record.key();
+        }
+
+        @Override
+        protected R newRecord(R record, Schema updatedSchema, Object updatedValue) {
+            return record.newRecord(record.topic(), record.kafkaPartition(), updatedSchema, updatedValue, record.valueSchema(), record.value(), record.timestamp());
+        }
+    }
+
+    /**
+     * Use this for converting raw JSON record Value
+     *
+     * @param <R>
+     */
+    public static class Value<R extends ConnectRecord<R>> extends ConvertCaseJson<R> {
+        @Override
+        protected Schema operatingSchema(R record) {
+            return record.valueSchema();
+        }
+
+        @Override
+        protected Object operatingValue(R record) {
+            return record.value();
+        }
+
+        @Override
+        protected R newRecord(R record, Schema updatedSchema, Object updatedValue) {
+            return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.kafka.connect.transforms.util.Requirements.requireMap;
+import static org.apache.kafka.connect.transforms.util.Requirements.requireStruct;
+
+/**
+ * Inserts the record key into the VALUE and converts its field name cases in one pass.
+ * The result is the same as {@link KeyToValue} followed by {@link ConvertCase.Value}, with a single value copy
+ * and a single new record. Takes the configuration of both transforms.
+ *
+ * @param <R>
+ */
+public class ConvertCaseKeyToValue<R extends ConnectRecord<R>> extends ConvertCase<R> {
+
+    public static final String OVERVIEW_DOC = "Inserts the record key into the value and converts record field name cases";
+
+    public static final ConfigDef CONFIG_DEF = new ConfigDef(ConvertCase.CONFIG_DEF);
+
+    static {
+        // metrics.enabled and metrics.name are defined by both
+        for (ConfigDef.ConfigKey key : KeyToValue.CONFIG_DEF.configKeys().values()) {
+            if (!CONFIG_DEF.names().contains(key.name)) {
+                CONFIG_DEF.define(key);
+            }
+        }
+    }
+
+    private static final String PURPOSE = "insert key into value struct and convert field names";
+
+    private static final String SCHEMALESS_PURPOSE = "insert key into schemaless value and convert field names";
+
+    private final KeyToValue<R> keyToValue = new KeyToValue<>();
+
+    @Override
+    public void configure(Map<String, ?> map) {
+        super.configure(map);
+        // Metrics are recorded once, by the conversion
+        final Map<String, Object> keyToValueProps = new HashMap<>(map);
+        keyToValueProps.put("metrics.enabled", false);
+        keyToValue.configure(keyToValueProps);
+    }
+
+    @Override
+    public R apply(R record) {
+        if (record.valueSchema() == null) {
+            final Map<String, Object> value = requireMap(record.value(), SCHEMALESS_PURPOSE);
+            final Map<String, Object> keyFields = new HashMap<>(4);
+            keyToValue.putKey(keyFields, record.key());
+            return applySchemaless(record, value, keyFields);
+        }
+        final Struct value = requireStruct(record.value(), PURPOSE);
+        final KeyToValue.CopyPlan plan = keyToValue.plan(value.schema(), record.keySchema());
+        return applyWithSchema(record, value, plan.schema, keyToValue.keyValues(plan, record.key()));
+    }
+
+    /*
+        Every record needs its key inserted, so records are not grouped by schema
+     */
+    @Override
+    public List<R> applyAll(List<R> records) {
+        final List<R> updatedRecords = new ArrayList<>(records.size());
+        for (R record : records) {
+            updatedRecords.add(apply(record));
+        }
+        return updatedRecords;
+    }
+
+    @Override
+    public ConfigDef config() {
+        return CONFIG_DEF;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        keyToValue.close();
+    }
+
+    @Override
+    protected Schema operatingSchema(R record) {
+        return record.valueSchema();
+    }
+
+    @Override
+    protected Object operatingValue(R record) {
+        return record.value();
+    }
+
+    @Override
+    protected R newRecord(R record, Schema updatedSchema, Object updatedValue) {
+        return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(), updatedSchema, updatedValue, record.timestamp());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.common.cache.Cache;
+import org.apache.kafka.common.cache.SynchronizedCache;
+
+/**
+ * Memo of converted field names in front of a {@link FieldNameConverter}. Field names repeat from record to record,
+ * so schemaless records and headers mostly skip the case conversion. Thread safe, shared by every engine of a transform.
+ * Names are admitted by frequency, so keys that are data and occur once do not evict the field names.
+ */
+final class FieldNameCache implements FieldNaming {
+    /*
+        Cached result of dropped fields, compared by identity
+     */
+    private static final String DROPPED = new String("<dropped>");
+
+    private final FieldNameConverter converter;
+    private final Cache<String, String> names;
+    private final Cache<String, String> containerNames;
+
+    FieldNameCache(FieldNameConverter converter, int size) {
+        this.converter = converter;
+        this.names = new SynchronizedCache<>(new TinyLfuCache<>(size));
+        this.containerNames = new SynchronizedCache<>(new TinyLfuCache<>(size));
+    }
+
+    /*
+        Struct, map and array fields ignore the selectors, so their names are cached apart
+     */
+    @Override
+    public String convertField(String fieldName, boolean override) {
+        final Cache<String, String> cache = override ? containerNames : names;
+        final String cached = cache.get(fieldName);
+        if (cached != null) {
+            return cached == DROPPED ? null : cached;
+        }
+        final String fieldName2Use = converter.convertField(fieldName, override);
+        cache.put(fieldName, fieldName2Use == null ? DROPPED : fieldName2Use);
+        return fieldName2Use;
+    }
+
+    long size() {
+        return names.size() + containerNames.size();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import com.google.common.base.CaseFormat;
+
+import java.util.Objects;
+
+/**
+ * Case conversion rule together with the whitelist, blacklist and noop selectors and the explicit renames.
+ * Shared by every transform that renames fields so they all agree on the resulting names.
+ */
+final class FieldNameConverter implements FieldNaming {
+    private final ConvertCase.CaseType caseType;
+    private final String whitelist;
+    private final String blacklist;
+    private final String noop;
+    private final RenameTable renames;
+
+    FieldNameConverter(ConvertCase.CaseType caseType, String whitelist, String blacklist, String noop) {
+        this(caseType, whitelist, blacklist, noop, null);
+    }
+
+    /*
+        renames is null when there is no rename file
+     */
+    FieldNameConverter(ConvertCase.CaseType caseType, String whitelist, String blacklist, String noop, RenameTable renames) {
+        this.caseType = caseType;
+        this.whitelist = whitelist;
+        this.blacklist = blacklist;
+        this.noop = noop;
+        this.renames = renames;
+    }
+
+    ConvertCase.CaseType caseType() {
+        return caseType;
+    }
+
+    /*
+        Whitelist and blacklist remove fields, noop only keeps names as they are
+     */
+    boolean dropsFields() {
+        return !whitelist.isEmpty() || !blacklist.isEmpty();
+    }
+
+    /*
+        Converts field name. If structure field noop, blacklist rule cannot be applied.
+        An explicit rename takes precedence over the case conversion
+     */
+    @Override
+    public String convertField(String fieldName, boolean override) {
+        if (!override) { // if structure blacklist, noop, whitelist doesn't apply
+            if (isNoop(fieldName)) { // if noop send fieldname
+                return fieldName;
+            }
+            if (isBlacklist(fieldName)) { // if blacklisted
+                return null;
+            }
+        }
+
+        if (renames != null) {
+            final String renamed = renames.get(fieldName);
+            if (renamed != null) {
+                return renamed;
+            }
+        }
+        return convertCase(fieldName); // Use converted field name
+    }
+
+    private boolean isBlacklist(String fieldName) {
+        return !(!blacklist.contains(fieldName) && (whitelist.isEmpty() || whitelist.contains(fieldName)));
+    }
+
+    private boolean isNoop(String fieldName) {
+        return !noop.isEmpty() && noop.contains(fieldName);
+    }
+
+    /*
+        Convert case based on conversion rule
+     */
+    String convertCase(String value) {
+        if (value == null) {
+            return null;
+        }
+        switch (caseType) {
+            case CAMEL2SNAKEUNDERSCORE:
+                return CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, value);
+            case CAMEL2SNAKEHYPHEN:
+                return CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_HYPHEN, value);
+            case SNAKEUNDERSCORE2CAMEL:
+                return CaseFormat.LOWER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, value);
+            case SNAKEHYPHEN2CAMEL:
+                return CaseFormat.LOWER_HYPHEN.to(CaseFormat.LOWER_CAMEL, value);
+            case UPPERCASE:
+                return value.toUpperCase();
+            case LOWERCASE:
+                return value.toLowerCase();
+            default:
+                return value;
+        }
+    }
+
+    /*
+        Converters with the same rules produce the same names, so they can share compiled plans
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final FieldNameConverter that = (FieldNameConverter) o;
+        return caseType == that.caseType
+                && whitelist.equals(that.whitelist)
+                && blacklist.equals(that.blacklist)
+                && noop.equals(that.noop)
+                && Objects.equals(renames, that.renames);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(caseType, whitelist, blacklist, noop, renames);
+    }
+}
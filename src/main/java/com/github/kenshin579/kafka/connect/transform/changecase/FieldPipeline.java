@@ -0,0 +1,563 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.common.cache.Cache;
+import org.apache.kafka.common.cache.LRUCache;
+import org.apache.kafka.common.cache.SynchronizedCache;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.apache.kafka.connect.transforms.util.SchemaUtil;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.kafka.connect.transforms.util.Requirements.requireMap;
+import static org.apache.kafka.connect.transforms.util.Requirements.requireStruct;
+
+/**
+ * Applies an ordered list of field operations to the VALUE: case change, rename, drop, key insertion and prefix.
+ * The operations are compiled per schema into one plan, so each record is copied once however many operations there are.
+ * Case changes apply to nested fields as well, the other operations to top level fields only.
+ *
+ * @param <R>
+ */
+public class FieldPipeline<R extends ConnectRecord<R>> implements Transformation<R> {
+
+    public static final String OVERVIEW_DOC = "Applies a list of field operations to the record value in a single pass";
+
+    private interface ConfigName {
+        String PIPELINE = "pipeline";
+        String TYPE = "type";
+        String CONVERT_FROM_TO = "convert.from.to";
+        String RENAMES = "renames";
+        String FIELDS = "fields";
+        String PREFIX = "prefix";
+        String SCHEMA_CACHE_SIZE = "schema.cache.size";
+        String METRICS_ENABLED = "metrics.enabled";
+        String METRICS_NAME = "metrics.name";
+    }
+
+    public static final ConfigDef CONFIG_DEF = new ConfigDef()
+            .define(ConfigName.PIPELINE, ConfigDef.Type.LIST, ConfigDef.Importance.HIGH,
+                    "Aliases of the operations in the order they are applied. Each operation is configured with "
+                            + "pipeline.<alias>.type, one of case, rename, drop, key or prefix, and the settings of that type "
+                            + "under pipeline.<alias>.")
+            .define(ConfigName.SCHEMA_CACHE_SIZE, ConfigDef.Type.INT, 16, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW,
+                    "Maximum number of compiled schemas kept in the cache")
+            .define(ConfigName.METRICS_ENABLED, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.LOW,
+                    "Register per topic metrics of the transform over JMX")
+            .define(ConfigName.METRICS_NAME, ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW,
+                    "Value of the transform tag of the metrics, e.g. the transform alias. Defaults to the class name");
+
+    private static final ConfigDef CASE_CONFIG_DEF = new ConfigDef()
+            .define(ConfigName.CONVERT_FROM_TO, ConfigDef.Type.STRING, ConfigDef.NO_DEFAULT_VALUE,
+                    ConfigDef.ValidString.in("uppercase", "lowercase", "snakehyphen2camel", "snakeunderscore2camel",
+                            "camel2snakehyphen", "camel2snakeunderscore"),
+                    ConfigDef.Importance.HIGH, "Case conversion of every field name");
+
+    private static final ConfigDef RENAME_CONFIG_DEF = new ConfigDef()
+            .define(ConfigName.RENAMES, ConfigDef.Type.LIST, ConfigDef.Importance.HIGH,
+                    "Top level fields to rename as old:new pairs");
+
+    private static final ConfigDef DROP_CONFIG_DEF = new ConfigDef()
+            .define(ConfigName.FIELDS, ConfigDef.Type.LIST, ConfigDef.Importance.HIGH,
+                    "Top level fields to drop");
+
+    private static final ConfigDef PREFIX_CONFIG_DEF = new ConfigDef()
+            .define(ConfigName.PREFIX, ConfigDef.Type.STRING, ConfigDef.Importance.HIGH,
+                    "Prefix added to every top level field name");
+
+    private static final String PURPOSE = "apply field pipeline to value struct";
+
+    private static final String SCHEMALESS_PURPOSE = "apply field pipeline to schemaless value";
+
+    /*
+        Key operations compile their key fields against this schema, so the plan only holds the key fields
+     */
+    private static final Schema NO_FIELDS = SchemaBuilder.struct().build();
+
+    private enum OperationType {
+        CASE,
+        RENAME,
+        DROP,
+        KEY,
+        PREFIX
+    }
+
+    private Operation[] operations;
+
+    /*
+        Naming of nested fields for fields present from operation i on, the value fields start at 0
+     */
+    private FieldNaming[] nestedNamings;
+
+    /*
+        KeyToValue of every key operation, in order
+     */
+    private KeyToValue<?>[] keyToValues;
+
+    private int schemaCacheSize;
+
+    private Cache<KeyToValue.PlanKey, PipelinePlan> schemaUpdateCache;
+
+    /*
+        Plan of the last schemas seen, found by identity without touching the cache
+     */
+    private volatile PipelinePlan lastPlan;
+
+    private ThreadLocal<ConversionEngine[]> conversionEngines;
+
+    private TransformMetrics metrics;
+
+    @Override
+    public void configure(Map<String, ?> props) {
+        final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
+        closeOperations();
+        final List<String> aliases = config.getList(ConfigName.PIPELINE);
+        if (aliases.isEmpty()) {
+            throw new ConfigException(ConfigName.PIPELINE, aliases, "At least one operation is required");
+        }
+        operations = new Operation[aliases.size()];
+        final List<KeyToValue<?>> keyOperations = new ArrayList<>();
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new Operation(aliases.get(i),
+                    config.originalsWithPrefix(ConfigName.PIPELINE + "." + aliases.get(i) + "."));
+            if (operations[i].keyToValue != null) {
+                keyOperations.add(operations[i].keyToValue);
+            }
+        }
+        keyToValues = keyOperations.toArray(new KeyToValue<?>[0]);
+
+        nestedNamings = new FieldNaming[operations.length + 1];
+        for (int i = 0; i <= operations.length; i++) {
+            nestedNamings[i] = nestedNaming(i);
+        }
+        final FieldNaming[] namings = nestedNamings;
+        conversionEngines = ThreadLocal.withInitial(() -> {
+            final ConversionEngine[] engines = new ConversionEngine[namings.length];
+            for (int i = 0; i < engines.length; i++) {
+                engines[i] = new ConversionEngine(namings[i], null);
+            }
+            return engines;
+        });
+
+        schemaCacheSize = config.getInt(ConfigName.SCHEMA_CACHE_SIZE);
+        schemaUpdateCache = new SynchronizedCache<>(new LRUCache<>(schemaCacheSize));
+        lastPlan = null;
+
+        closeMetrics();
+        if (config.getBoolean(ConfigName.METRICS_ENABLED)) {
+            final String metricsName = config.getString(ConfigName.METRICS_NAME);
+            metrics = TransformMetrics.register("field-pipeline-metrics",
+                    metricsName.isEmpty() ? getClass().getSimpleName() : metricsName);
+        }
+    }
+
+    /*
+        Nested names only change with the case operations from operation start on
+     */
+    private FieldNaming nestedNaming(int start) {
+        final List<FieldNameConverter> converters = new ArrayList<>();
+        for (int i = start; i < operations.length; i++) {
+            if (operations[i].type == OperationType.CASE) {
+                converters.add(operations[i].converter);
+            }
+        }
+        return (fieldName, override) -> {
+            String name = fieldName;
+            for (FieldNameConverter converter : converters) {
+                name = converter.convertCase(name);
+            }
+            return name;
+        };
+    }
+
+    private void closeMetrics() {
+        if (metrics != null) {
+            metrics.close();
+            metrics = null;
+        }
+    }
+
+    private void closeOperations() {
+        if (keyToValues != null) {
+            for (KeyToValue<?> keyToValue : keyToValues) {
+                keyToValue.close();
+            }
+            keyToValues = null;
+        }
+    }
+
+    @Override
+    public R apply(R record) {
+        if (record.value() == null) {
+            if (metrics != null) {
+                metrics.topic(record.topic()).recordPassthrough();
+            }
+            return record;
+        } else if (record.valueSchema() == null) {
+            return applySchemaless(record);
+        }
+        final Struct value = requireStruct(record.value(), PURPOSE);
+        final TransformMetrics.TopicMetrics topicMetrics = metrics == null ? null : metrics.topic(record.topic());
+        final long start = topicMetrics == null ? 0L : System.nanoTime();
+
+        final PipelinePlan plan = resolvePlan(value.schema(), record.keySchema(), topicMetrics, start);
+        final ConversionEngine engine = conversionEngines.get()[0];
+        final Struct updatedValue = plan.keyPlans.length == 0
+                ? engine.convertStruct(plan.plan, value)
+                : engine.convertStruct(plan.plan, value, keyValues(plan, record.key()));
+
+        if (topicMetrics != null) {
+            topicMetrics.recordSchema(System.nanoTime() - start, plan.plan.fields.length, plan.plan.dropped);
+        }
+        return record.newRecord(
+                record.topic(),
+                record.kafkaPartition(),
+                record.keySchema(),
+                record.key(),
+                plan.plan.schema,
+                updatedValue,
+                record.timestamp()
+        );
+    }
+
+    /*
+        Schemaless values have no plan, every entry goes through the operations. Key fields must not collide with
+        the entries present at the point they are inserted
+     */
+    private R applySchemaless(R record) {
+        final Map<String, Object> value = requireMap(record.value(), SCHEMALESS_PURPOSE);
+        final TransformMetrics.TopicMetrics topicMetrics = metrics == null ? null : metrics.topic(record.topic());
+        final long start = topicMetrics == null ? 0L : System.nanoTime();
+        final ConversionEngine[] engines = conversionEngines.get();
+
+        final List<Map<String, Object>> keyEntries = new ArrayList<>(operations.length);
+        for (int i = 0; i < operations.length; i++) {
+            Map<String, Object> keyEntry = null;
+            if (operations[i].type == OperationType.KEY) {
+                keyEntry = new HashMap<>(4);
+                operations[i].keyToValue.putKey(keyEntry, record.key());
+            }
+            keyEntries.add(keyEntry);
+        }
+
+        final Map<String, Object> updatedValue = new HashMap<>((int) (value.size() / 0.75f) + 1);
+        long dropped = 0;
+        for (Map.Entry<String, Object> entry : value.entrySet()) {
+            final String name = fieldName(entry.getKey(), 0, keyEntries);
+            if (name == null) {
+                dropped++;
+            } else {
+                updatedValue.put(name, convert(engines[0], entry.getValue()));
+            }
+        }
+        for (int i = 0; i < operations.length; i++) {
+            if (keyEntries.get(i) == null) {
+                continue;
+            }
+            for (Map.Entry<String, Object> entry : keyEntries.get(i).entrySet()) {
+                final String name = fieldName(entry.getKey(), i + 1, keyEntries);
+                if (name != null) {
+                    updatedValue.put(name, convert(engines[i + 1], entry.getValue()));
+                }
+            }
+        }
+
+        if (topicMetrics != null) {
+            topicMetrics.recordSchemaless(System.nanoTime() - start, updatedValue.size(), dropped);
+        }
+        return record.newRecord(
+                record.topic(),
+                record.kafkaPartition(),
+                record.keySchema(),
+                record.key(),
+                null,
+                updatedValue,
+                record.timestamp()
+        );
+    }
+
+    /*
+        Name of a top level entry after the operations from operation start on, null when it is dropped
+     */
+    private String fieldName(String fieldName, int start, List<Map<String, Object>> keyEntries) {
+        String name = fieldName;
+        for (int i = start; i < operations.length && name != null; i++) {
+            if (operations[i].type != OperationType.KEY) {
+                name = operations[i].fieldName(name);
+            } else if (keyEntries.get(i).containsKey(name)) {
+                throw collision(operations[i], name);
+            }
+        }
+        return name;
+    }
+
+    /*
+        Key fields never replace value fields silently, like KeyToValue
+     */
+    private static DataException collision(Operation operation, String name) {
+        return new DataException("Key field " + name + " of pipeline operation " + operation.alias
+                + " collides with a value field of the same name");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object convert(ConversionEngine engine, Object value) {
+        if (value instanceof Map) {
+            return engine.convertMap((Map<String, Object>) value);
+        } else if (value instanceof List) {
+            return engine.convertSchemalessList((List<?>) value);
+        }
+        return value;
+    }
+
+    /*
+        Values of the key fields of every key operation, one after the other
+     */
+    private Object[] keyValues(PipelinePlan plan, Object key) {
+        if (plan.keyPlans.length == 1) {
+            return keyToValues[0].keyValues(plan.keyPlans[0], key);
+        }
+        final Object[] keyValues = new Object[plan.keyFieldCount];
+        int offset = 0;
+        for (int i = 0; i < plan.keyPlans.length; i++) {
+            final Object[] operationValues = keyToValues[i].keyValues(plan.keyPlans[i], key);
+            System.arraycopy(operationValues, 0, keyValues, offset, operationValues.length);
+            offset += operationValues.length;
+        }
+        return keyValues;
+    }
+
+    /*
+        Cached plan of the schemas, compiled on first use. The key schema only matters when a key is inserted
+     */
+    private PipelinePlan resolvePlan(Schema schema, Schema keySchema, TransformMetrics.TopicMetrics topicMetrics, long start) {
+        final Schema planKeySchema = keyToValues.length > 0 ? keySchema : null;
+        PipelinePlan plan = lastPlan;
+        if (plan != null && plan.source == schema && plan.keySource == planKeySchema) {
+            if (topicMetrics != null) {
+                topicMetrics.recordCacheHit();
+            }
+            return plan;
+        }
+
+        final KeyToValue.PlanKey planKey = new KeyToValue.PlanKey(schema, planKeySchema);
+        plan = schemaUpdateCache.get(planKey);
+        if (plan == null) {
+            plan = compilePlan(schema, planKeySchema);
+            if (topicMetrics != null) {
+                topicMetrics.recordCacheMiss(schemaUpdateCache.size() >= schemaCacheSize);
+                topicMetrics.recordCompile(System.nanoTime() - start);
+            }
+            schemaUpdateCache.put(planKey, plan);
+        } else if (topicMetrics != null) {
+            topicMetrics.recordCacheHit();
+        }
+        lastPlan = plan;
+        return plan;
+    }
+
+    /*
+        Runs the operations over the top level fields once, remembering where every remaining field is read from.
+        Key fields are read past the end of the value, in the order of the key operations
+     */
+    private PipelinePlan compilePlan(Schema schema, Schema keySchema) {
+        final List<PlannedField> planned = new ArrayList<>();
+        for (Field field : schema.fields()) {
+            planned.add(new PlannedField(field.name(), field, 0));
+        }
+        final List<KeyToValue.CopyPlan> keyPlans = new ArrayList<>();
+        int keyIndex = schema.fields().size();
+        for (int i = 0; i < operations.length; i++) {
+            final Operation operation = operations[i];
+            if (operation.type == OperationType.KEY) {
+                final KeyToValue.CopyPlan keyPlan = operation.keyToValue.plan(NO_FIELDS, keySchema);
+                keyPlans.add(keyPlan);
+                for (Field keyField : keyPlan.schema.fields()) {
+                    for (PlannedField field : planned) {
+                        if (field.name.equals(keyField.name())) {
+                            throw collision(operation, field.name);
+                        }
+                    }
+                    planned.add(new PlannedField(keyField.name(), new Field(keyField.name(), keyIndex++, keyField.schema()), i + 1));
+                }
+                continue;
+            }
+            for (PlannedField field : planned) {
+                field.name = operation.fieldName(field.name);
+            }
+            planned.removeIf(field -> field.name == null);
+        }
+
+        final SchemaBuilder builder = SchemaUtil.copySchemaBasics(schema, SchemaBuilder.struct());
+        final Set<String> names = new HashSet<>();
+        final Field[] sourceFields = new Field[planned.size()];
+        final ConversionPlan[] children = new ConversionPlan[planned.size()];
+        for (int i = 0; i < sourceFields.length; i++) {
+            final PlannedField field = planned.get(i);
+            if (!names.add(field.name)) {
+                throw new DataException("Field pipeline produces the field " + field.name + " twice for schema " + schema);
+            }
+            final Schema fieldSchema = field.source.schema();
+            sourceFields[i] = field.source;
+            children[i] = ConversionPlan.isContainer(fieldSchema)
+                    ? ConversionPlan.compile(fieldSchema, nestedNamings[field.operation])
+                    : ConversionPlan.LEAF_PLAN;
+            builder.field(field.name, children[i].kind == ConversionPlan.LEAF ? fieldSchema : children[i].schema);
+        }
+        int dropped = schema.fields().size();
+        for (Field field : sourceFields) {
+            if (field.index() < schema.fields().size()) {
+                dropped--;
+            }
+        }
+        return new PipelinePlan(schema, keySchema, ConversionPlan.struct(builder.optional().build(), sourceFields, children, dropped),
+                keyPlans.toArray(new KeyToValue.CopyPlan[0]), keyIndex - schema.fields().size());
+    }
+
+    @Override
+    public ConfigDef config() {
+        return CONFIG_DEF;
+    }
+
+    @Override
+    public void close() {
+        closeOperations();
+        closeMetrics();
+        schemaUpdateCache = null;
+        conversionEngines = null;
+        lastPlan = null;
+    }
+
+    /*
+        One configured operation. Key operations delegate to a KeyToValue configured with the same settings
+     */
+    private static final class Operation {
+        private final String alias;
+        private final OperationType type;
+        private FieldNameConverter converter;
+        private Map<String, String> renames;
+        private Set<String> fields;
+        private String prefix;
+        private KeyToValue<?> keyToValue;
+
+        private Operation(String alias, Map<String, Object> props) {
+            this.alias = alias;
+            final Object typeName = props.get(ConfigName.TYPE);
+            try {
+                type = OperationType.valueOf(String.valueOf(typeName).toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ConfigException(ConfigName.PIPELINE + "." + alias + "." + ConfigName.TYPE, typeName,
+                        "Valid values include " + Arrays.asList(OperationType.values()));
+            }
+            switch (type) {
+                case CASE:
+                    converter = new FieldNameConverter(ConvertCase.CaseType.getEnum(
+                            new SimpleConfig(CASE_CONFIG_DEF, props).getString(ConfigName.CONVERT_FROM_TO)), "", "", "");
+                    break;
+                case RENAME:
+                    renames = new HashMap<>();
+                    for (String rename : new SimpleConfig(RENAME_CONFIG_DEF, props).getList(ConfigName.RENAMES)) {
+                        final String[] oldAndNew = rename.split(":", -1);
+                        if (oldAndNew.length != 2 || oldAndNew[0].isEmpty() || oldAndNew[1].isEmpty()) {
+                            throw new ConfigException(ConfigName.PIPELINE + "." + alias + "." + ConfigName.RENAMES, rename,
+                                    "Expected old:new");
+                        }
+                        renames.put(oldAndNew[0], oldAndNew[1]);
+                    }
+                    break;
+                case DROP:
+                    fields = new HashSet<>(new SimpleConfig(DROP_CONFIG_DEF, props).getList(ConfigName.FIELDS));
+                    break;
+                case PREFIX:
+                    prefix = new SimpleConfig(PREFIX_CONFIG_DEF, props).getString(ConfigName.PREFIX);
+                    break;
+                default:
+                    final Map<String, Object> keyToValueProps = new HashMap<>(props);
+                    keyToValueProps.remove(ConfigName.TYPE);
+                    keyToValueProps.put(ConfigName.METRICS_ENABLED, false);
+                    keyToValue = new KeyToValue<>();
+                    keyToValue.configure(keyToValueProps);
+            }
+        }
+
+        /*
+            New name of a top level field, null when it is dropped. Not used for key operations
+         */
+        private String fieldName(String name) {
+            switch (type) {
+                case CASE:
+                    return converter.convertCase(name);
+                case RENAME:
+                    return renames.getOrDefault(name, name);
+                case DROP:
+                    return fields.contains(name) ? null : name;
+                default:
+                    return prefix + name;
+            }
+        }
+    }
+
+    /*
+        Top level field while the plan is compiled. operation is the index of the first operation it goes through
+     */
+    private static final class PlannedField {
+        private String name;
+        private final Field source;
+        private final int operation;
+
+        private PlannedField(String name, Field source, int operation) {
+            this.name = name;
+            this.source = source;
+            this.operation = operation;
+        }
+    }
+
+    /*
+        Compiled pipeline of one pair of source schemas, with the key plans of the key operations in order
+     */
+    private static final class PipelinePlan {
+        private final Schema source;
+        private final Schema keySource;
+        private final ConversionPlan plan;
+        private final KeyToValue.CopyPlan[] keyPlans;
+        private final int keyFieldCount;
+
+        private PipelinePlan(Schema source, Schema keySource, ConversionPlan plan, KeyToValue.CopyPlan[] keyPlans, int keyFieldCount) {
+            this.source = source;
+            this.keySource = keySource;
+            this.plan = plan;
+            this.keyPlans = keyPlans;
+            this.keyFieldCount = keyFieldCount;
+        }
+    }
+}
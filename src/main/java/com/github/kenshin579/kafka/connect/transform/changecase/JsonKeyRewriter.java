@@ -0,0 +1,512 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.connect.errors.DataException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rewrites object keys of a UTF-8 JSON document in a single forward pass.
+ * Values are copied byte for byte, so no tree is built and numbers are never parsed.
+ * Nesting is tracked with an explicit stack, so document depth is not limited by the thread stack.
+ * Two keys of an object that convert to the same name are rejected, instead of writing a duplicate key.
+ * A rewriter handles a single document.
+ */
+final class JsonKeyRewriter {
+    private static final int INITIAL_DEPTH = 16;
+
+    private final FieldNaming naming;
+    private final byte[] in;
+    /*
+        Old to new key paths for the tracer, null unless the document is traced
+     */
+    private final Map<String, String> mapping;
+
+    private byte[] out;
+    private int size;
+    private int pos;
+    private boolean changed;
+    private int fieldsConverted;
+    private int fieldsDropped;
+
+    private int depth;
+    private boolean[] objects = new boolean[INITIAL_DEPTH];
+    private int[] written = new int[INITIAL_DEPTH];
+    private boolean[] lastKept = new boolean[INITIAL_DEPTH];
+    /*
+        Old and new name of every key written in the open objects, and where each object starts.
+        Objects without a renamed key cannot have colliding names and are not checked
+     */
+    private String[] names = new String[INITIAL_DEPTH * 2];
+    private int nameCount;
+    private int[] namesStart = new int[INITIAL_DEPTH];
+    private boolean[] renamed = new boolean[INITIAL_DEPTH];
+    private String[] oldPaths;
+    private String[] newPaths;
+    private String memberOldPath;
+    private String memberNewPath;
+
+    JsonKeyRewriter(FieldNaming naming, byte[] in, Map<String, String> mapping) {
+        this.naming = naming;
+        this.in = in;
+        this.mapping = mapping;
+        this.out = new byte[in.length + 16];
+        if (mapping != null) {
+            oldPaths = new String[INITIAL_DEPTH];
+            newPaths = new String[INITIAL_DEPTH];
+        }
+    }
+
+    /*
+        Keys written to the output, renamed or not
+     */
+    int fieldsConverted() {
+        return fieldsConverted;
+    }
+
+    int fieldsDropped() {
+        return fieldsDropped;
+    }
+
+    /*
+        Returns the same array when no key was renamed or dropped
+     */
+    byte[] rewrite() {
+        copyWhitespace();
+        if (pos == in.length) {
+            return in;
+        }
+
+        boolean expectValue = true;
+        while (true) {
+            if (expectValue) {
+                expectValue = value();
+                continue;
+            }
+            if (depth == 0) {
+                copyWhitespace();
+                if (pos != in.length) {
+                    throw error("Unexpected trailing content");
+                }
+                break;
+            }
+
+            final int level = depth - 1;
+            final int separatorStart = pos;
+            pos = skipWhitespace(pos);
+            final byte c = at(pos);
+            if (objects[level]) {
+                if (c == '}') {
+                    closeObject(level);
+                    if (lastKept[level]) {
+                        write(separatorStart, pos);
+                    }
+                    write(c);
+                    pos++;
+                    depth--;
+                } else if (c == ',') {
+                    final int commaPos = pos;
+                    pos = skipWhitespace(pos + 1);
+                    expectValue = member(separatorStart, commaPos);
+                } else {
+                    throw error("Expected ',' or '}'");
+                }
+            } else {
+                write(separatorStart, pos);
+                if (c == ']') {
+                    write(c);
+                    pos++;
+                    depth--;
+                } else if (c == ',') {
+                    write(c);
+                    pos++;
+                    copyWhitespace();
+                    expectValue = true;
+                } else {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        return changed ? Arrays.copyOf(out, size) : in;
+    }
+
+    /*
+        Handles the value at the current position. Returns true when a member or element value is expected next
+     */
+    private boolean value() {
+        final byte c = at(pos);
+        if (c == '{' || c == '[') {
+            final boolean object = c == '{';
+            push(object);
+            write(c);
+            pos++;
+            copyWhitespace();
+            final byte next = at(pos);
+            if (next == (object ? '}' : ']')) {
+                write(next);
+                pos++;
+                depth--;
+                return false;
+            }
+            return object ? member(-1, -1) : true;
+        }
+        final int end = scalarEnd(pos);
+        write(pos, end);
+        pos = end;
+        return false;
+    }
+
+    /*
+        Handles an object member whose key starts at the current position
+     */
+    private boolean member(int separatorStart, int commaPos) {
+        final int level = depth - 1;
+        final int keyStart = pos;
+        if (at(keyStart) != '"') {
+            throw error("Expected object key");
+        }
+        final int keyEnd = stringEnd(keyStart);
+        int p = skipWhitespace(keyEnd);
+        if (at(p) != ':') {
+            throw error("Expected ':'");
+        }
+        final int valueStart = skipWhitespace(p + 1);
+        final byte valueFirst = at(valueStart);
+
+        final String fieldName = decodeString(keyStart, keyEnd);
+        final String fieldName2Use = naming.convertField(fieldName, valueFirst == '{' || valueFirst == '[');
+        if (mapping != null) {
+            trace(level, fieldName, fieldName2Use);
+        }
+        if (fieldName2Use == null) {
+            changed = true;
+            fieldsDropped++;
+            pos = skipValue(valueStart);
+            lastKept[level] = false;
+            return false;
+        }
+
+        if (commaPos >= 0) {
+            if (lastKept[level]) {
+                write(separatorStart, keyStart);
+            } else {
+                if (written[level] > 0) {
+                    write((byte) ',');
+                }
+                write(commaPos + 1, keyStart);
+            }
+        }
+        if (fieldName2Use.equals(fieldName)) {
+            write(keyStart, keyEnd);
+        } else {
+            changed = true;
+            renamed[level] = true;
+            writeString(fieldName2Use);
+        }
+        addName(fieldName, fieldName2Use);
+        write(keyEnd, valueStart);
+
+        written[level]++;
+        fieldsConverted++;
+        lastKept[level] = true;
+        pos = valueStart;
+        return true;
+    }
+
+    private void push(boolean object) {
+        if (depth == objects.length) {
+            final int capacity = depth * 2;
+            objects = Arrays.copyOf(objects, capacity);
+            written = Arrays.copyOf(written, capacity);
+            lastKept = Arrays.copyOf(lastKept, capacity);
+            namesStart = Arrays.copyOf(namesStart, capacity);
+            renamed = Arrays.copyOf(renamed, capacity);
+            if (mapping != null) {
+                oldPaths = Arrays.copyOf(oldPaths, capacity);
+                newPaths = Arrays.copyOf(newPaths, capacity);
+            }
+        }
+        objects[depth] = object;
+        written[depth] = 0;
+        lastKept[depth] = false;
+        namesStart[depth] = nameCount;
+        renamed[depth] = false;
+        if (mapping != null) {
+            tracePath();
+        }
+        depth++;
+    }
+
+    private void addName(String fieldName, String fieldName2Use) {
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, nameCount * 2);
+        }
+        names[nameCount++] = fieldName;
+        names[nameCount++] = fieldName2Use;
+    }
+
+    /*
+        Fails when two different keys of the object were written with the same name, then forgets its keys
+     */
+    private void closeObject(int level) {
+        if (renamed[level]) {
+            final Map<String, String> sources = new HashMap<>();
+            for (int i = namesStart[level]; i < nameCount; i += 2) {
+                final String other = sources.put(names[i + 1], names[i]);
+                if (other != null && !other.equals(names[i])) {
+                    throw error("Keys \"" + other + "\" and \"" + names[i] + "\" both convert to \"" + names[i + 1] + "\"");
+                }
+            }
+        }
+        nameCount = namesStart[level];
+    }
+
+    /*
+        Path of the container being pushed: its member in an object, [] appended in an array
+     */
+    private void tracePath() {
+        if (depth == 0) {
+            oldPaths[depth] = "";
+            newPaths[depth] = "";
+        } else if (objects[depth - 1]) {
+            oldPaths[depth] = memberOldPath;
+            newPaths[depth] = memberNewPath;
+        } else {
+            oldPaths[depth] = oldPaths[depth - 1] + "[]";
+            newPaths[depth] = newPaths[depth - 1] + "[]";
+        }
+    }
+
+    /*
+        Paths repeated by array elements are listed once, like the tracer does for maps
+     */
+    private void trace(int level, String fieldName, String fieldName2Use) {
+        memberOldPath = oldPaths[level].isEmpty() ? fieldName : oldPaths[level] + "." + fieldName;
+        if (fieldName2Use == null) {
+            mapping.putIfAbsent(memberOldPath, ConversionTracer.DROPPED);
+            return;
+        }
+        memberNewPath = newPaths[level].isEmpty() ? fieldName2Use : newPaths[level] + "." + fieldName2Use;
+        mapping.putIfAbsent(memberOldPath, memberNewPath);
+    }
+
+    private byte at(int index) {
+        if (index >= in.length) {
+            throw error("Unexpected end of input");
+        }
+        return in[index];
+    }
+
+    private int skipWhitespace(int index) {
+        while (index < in.length && isWhitespace(in[index])) {
+            index++;
+        }
+        return index;
+    }
+
+    private void copyWhitespace() {
+        final int end = skipWhitespace(pos);
+        write(pos, end);
+        pos = end;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /*
+        Index just past the closing quote of the string starting at index
+     */
+    private int stringEnd(int index) {
+        int i = index + 1;
+        while (i < in.length) {
+            final byte b = in[i];
+            if (b == '"') {
+                return i + 1;
+            }
+            i += b == '\\' ? 2 : 1;
+        }
+        throw error("Unterminated string");
+    }
+
+    /*
+        Index just past a number, literal or string starting at index
+     */
+    private int scalarEnd(int index) {
+        if (in[index] == '"') {
+            return stringEnd(index);
+        }
+        int i = index;
+        while (i < in.length) {
+            final byte b = in[i];
+            if (b == ',' || b == '}' || b == ']' || b == ':' || b == '{' || b == '[' || b == '"' || isWhitespace(b)) {
+                break;
+            }
+            i++;
+        }
+        if (i == index) {
+            throw error("Unexpected character '" + (char) in[index] + "'");
+        }
+        return i;
+    }
+
+    /*
+        Index just past the value starting at index, without producing output
+     */
+    private int skipValue(int index) {
+        final byte c = at(index);
+        if (c != '{' && c != '[') {
+            return scalarEnd(index);
+        }
+        int nesting = 0;
+        int i = index;
+        while (i < in.length) {
+            final byte b = in[i];
+            if (b == '"') {
+                i = stringEnd(i);
+                continue;
+            }
+            if (b == '{' || b == '[') {
+                nesting++;
+            } else if (b == '}' || b == ']') {
+                if (--nesting == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        throw error("Unexpected end of input");
+    }
+
+    /*
+        Decodes the JSON string between start and end (both quotes included)
+     */
+    private String decodeString(int start, int end) {
+        final int contentStart = start + 1;
+        final int contentEnd = end - 1;
+        boolean ascii = true;
+        for (int i = contentStart; i < contentEnd; i++) {
+            final byte b = in[i];
+            if (b == '\\') {
+                return decodeEscaped(contentStart, contentEnd);
+            }
+            if (b < 0) {
+                ascii = false;
+            }
+        }
+        return new String(in, contentStart, contentEnd - contentStart,
+                ascii ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8);
+    }
+
+    private String decodeEscaped(int contentStart, int contentEnd) {
+        final StringBuilder builder = new StringBuilder(contentEnd - contentStart);
+        int segmentStart = contentStart;
+        int i = contentStart;
+        while (i < contentEnd) {
+            if (in[i] != '\\') {
+                i++;
+                continue;
+            }
+            builder.append(new String(in, segmentStart, i - segmentStart, StandardCharsets.UTF_8));
+            final byte escaped = at(i + 1);
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    builder.append((char) escaped);
+                    break;
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (i + 6 > contentEnd) {
+                        throw error("Invalid unicode escape");
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(new String(in, i + 2, 4, StandardCharsets.US_ASCII), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    throw error("Invalid escape character '" + (char) escaped + "'");
+            }
+            i += 2;
+            segmentStart = i;
+        }
+        builder.append(new String(in, segmentStart, contentEnd - segmentStart, StandardCharsets.UTF_8));
+        return builder.toString();
+    }
+
+    private void writeString(String value) {
+        final StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        final byte[] bytes = builder.append('"').toString().getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, out, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void write(byte b) {
+        ensureCapacity(1);
+        out[size++] = b;
+    }
+
+    private void write(int start, int end) {
+        final int length = end - start;
+        ensureCapacity(length);
+        System.arraycopy(in, start, out, size, length);
+        size += length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > out.length) {
+            out = Arrays.copyOf(out, Math.max(out.length * 2, size + extra));
+        }
+    }
+
+    private DataException error(String message) {
+        return new DataException("Invalid JSON at offset " + pos + ": " + message);
+    }
+}
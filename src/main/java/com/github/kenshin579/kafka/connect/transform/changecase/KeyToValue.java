@@ -1,21 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package com.github.kenshin579.kafka.connect.transform.changecase;
 
 import org.apache.kafka.common.cache.Cache;
 import org.apache.kafka.common.cache.LRUCache;
 import org.apache.kafka.common.cache.SynchronizedCache;
 import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.connector.ConnectRecord;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.transforms.Transformation;
 import org.apache.kafka.connect.transforms.util.SchemaUtil;
 import org.apache.kafka.connect.transforms.util.SimpleConfig;
 
+import static org.apache.kafka.connect.transforms.util.Requirements.requireMap;
 import static org.apache.kafka.connect.transforms.util.Requirements.requireStruct;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public class KeyToValue<R extends ConnectRecord<R>> implements Transformation<R> {
 
@@ -23,70 +49,502 @@ public class KeyToValue<R extends ConnectRecord<R>> implements Transformation<R>
             "Update the record's value by inserting a new column with the key of the record";
 
     public static final ConfigDef CONFIG_DEF = new ConfigDef()
-            .define(ConfigName.FIELD_NAME, ConfigDef.Type.STRING,  ConfigDef.Importance.MEDIUM,
-                    "Field name");
+            .define(ConfigName.FIELD_NAME, ConfigDef.Type.STRING, "", ConfigDef.Importance.MEDIUM,
+                    "Field name")
+            .define(ConfigName.KEY_FIELDS, ConfigDef.Type.LIST, "", ConfigDef.Importance.MEDIUM,
+                    "Key fields copied into the value instead of the whole key, as path:target pairs "
+                            + "e.g. tenant.id:tenant_id,order_id. The target defaults to the last path element")
+            .define(ConfigName.KEY_EMBED, ConfigDef.Type.STRING, "string",
+                    ConfigDef.ValidString.in("string", "typed", "flatten"), ConfigDef.Importance.MEDIUM,
+                    "How the key is embedded: string inserts key.toString(), typed inserts the key with its own schema, "
+                            + "flatten inserts every field of a Struct key as a field of its own")
+            .define(ConfigName.KEY_FLATTEN_DELIMITER, ConfigDef.Type.STRING, ".", ConfigDef.Importance.LOW,
+                    "Delimiter between the field name and the key field names of flattened keys")
+            .define(ConfigName.SCHEMALESS_IN_PLACE, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.LOW,
+                    "Insert the key into schemaless HashMap values instead of a copy. Only safe when nothing else "
+                            + "holds on to the value, e.g. right after the JsonConverter")
+            .define(ConfigName.METRICS_ENABLED, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.LOW,
+                    "Register per topic metrics of the transform over JMX")
+            .define(ConfigName.METRICS_NAME, ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW,
+                    "Value of the transform tag of the metrics, e.g. the transform alias. Defaults to the class name");
 
     private interface ConfigName {
         String FIELD_NAME = "key.field.name";
+        String KEY_FIELDS = "key.fields";
+        String KEY_EMBED = "key.embed";
+        String KEY_FLATTEN_DELIMITER = "key.flatten.delimiter";
+        String SCHEMALESS_IN_PLACE = "schemaless.in.place";
+        String METRICS_ENABLED = "metrics.enabled";
+        String METRICS_NAME = "metrics.name";
+    }
+
+    private enum KeyEmbed {
+        STRING,
+        TYPED,
+        FLATTEN,
+        /*
+            Set by key.fields rather than key.embed
+         */
+        PROJECT
     }
 
     private static final String PURPOSE = "insert key into value struct";
 
+    private static final String SCHEMALESS_PURPOSE = "insert key into schemaless value";
+
     private String fieldName;
 
-    private Cache<String, Schema> schemaUpdateCache;
+    private KeyEmbed keyEmbed;
+
+    private String flattenDelimiter;
+
+    private boolean schemalessInPlace;
+
+    private String[][] projectionPaths;
+
+    private String[] projectionTargets;
+
+    private static final int SCHEMA_CACHE_SIZE = 16;
+
+    private Cache<PlanKey, CopyPlan> schemaUpdateCache;
+
+    /*
+        Plans of the last two schemas seen, found by identity without touching the cache,
+        so records alternating between two schemas do not allocate a cache key either
+     */
+    private volatile CopyPlan lastPlan;
+    private volatile CopyPlan previousPlan;
+
+    private TransformMetrics metrics;
 
     @Override
     public void configure(Map<String, ?> props) {
         final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
         fieldName = config.getString(ConfigName.FIELD_NAME);
-        schemaUpdateCache = new SynchronizedCache<>(new LRUCache<>(16));
+        final List<String> keyFields = config.getList(ConfigName.KEY_FIELDS);
+        if (fieldName.isEmpty() == keyFields.isEmpty()) {
+            throw new ConfigException("Exactly one of " + ConfigName.FIELD_NAME + " and " + ConfigName.KEY_FIELDS + " must be set");
+        }
+        projectionPaths = new String[keyFields.size()][];
+        projectionTargets = new String[keyFields.size()];
+        for (int i = 0; i < keyFields.size(); i++) {
+            final String[] pathAndTarget = keyFields.get(i).split(":", -1);
+            if (pathAndTarget.length > 2 || pathAndTarget[0].isEmpty() || (pathAndTarget.length == 2 && pathAndTarget[1].isEmpty())) {
+                throw new ConfigException(ConfigName.KEY_FIELDS, keyFields.get(i), "Expected path:target or path");
+            }
+            projectionPaths[i] = pathAndTarget[0].split("\\.");
+            projectionTargets[i] = pathAndTarget.length == 2 ? pathAndTarget[1] : projectionPaths[i][projectionPaths[i].length - 1];
+        }
+        keyEmbed = keyFields.isEmpty() ? KeyEmbed.valueOf(config.getString(ConfigName.KEY_EMBED).toUpperCase()) : KeyEmbed.PROJECT;
+        flattenDelimiter = config.getString(ConfigName.KEY_FLATTEN_DELIMITER);
+        schemalessInPlace = config.getBoolean(ConfigName.SCHEMALESS_IN_PLACE);
+        schemaUpdateCache = new SynchronizedCache<>(new LRUCache<>(SCHEMA_CACHE_SIZE));
+        lastPlan = null;
+        previousPlan = null;
+
+        closeMetrics();
+        if (config.getBoolean(ConfigName.METRICS_ENABLED)) {
+            final String metricsName = config.getString(ConfigName.METRICS_NAME);
+            metrics = TransformMetrics.register("key-to-value-metrics",
+                    metricsName.isEmpty() ? getClass().getSimpleName() : metricsName);
+        }
+    }
+
+    private void closeMetrics() {
+        if (metrics != null) {
+            metrics.close();
+            metrics = null;
+        }
     }
 
     @Override
     public R apply(R record) {
+        if (record.valueSchema() == null) {
+            return applySchemaless(record);
+        }
         final Struct value = requireStruct(record.value(), PURPOSE);
+        final TransformMetrics.TopicMetrics topicMetrics = metrics == null ? null : metrics.topic(record.topic());
+        final long start = topicMetrics == null ? 0L : System.nanoTime();
 
-        final String hashCode = String.valueOf(value.schema().hashCode());
+        final CopyPlan plan = resolvePlan(value.schema(), record.keySchema(), topicMetrics, start);
+        final Struct updatedValue = new Struct(plan.schema);
+        // Struct has no unchecked put, so values are validated again. The updated fields share the schemas of the
+        // source fields, which makes the check a type lookup and an identity comparison for nested structs
+        final Field[] fields = plan.fields;
+        for (int i = 0; i < fields.length; i++) {
+            updatedValue.put(fields[i], value.get(fields[i]));
+        }
+        final Field[] keyFields = plan.keyFields;
+        for (int i = 0; i < keyFields.length; i++) {
+            updatedValue.put(keyFields[i], keyValue(plan, i, record.key()));
+        }
 
-        Schema updatedSchema = schemaUpdateCache.get(hashCode);
-        if (updatedSchema == null) {
-            updatedSchema = makeUpdatedSchema(value.schema());
-            schemaUpdateCache.put(hashCode, updatedSchema);
+        if (topicMetrics != null) {
+            topicMetrics.recordSchema(System.nanoTime() - start, fields.length + keyFields.length, 0);
         }
+        return record.newRecord(
+                record.topic(),
+                record.kafkaPartition(),
+                record.keySchema(),
+                record.key(),
+                plan.schema,
+                updatedValue,
+                record.timestamp()
+        );
+    }
 
-        final Struct updatedValue = new Struct(updatedSchema);
+    /*
+        Inserts the key into a copy of the map sized for the key, or into the map itself when allowed
+     */
+    private R applySchemaless(R record) {
+        final Map<String, Object> value = requireMap(record.value(), SCHEMALESS_PURPOSE);
+        final TransformMetrics.TopicMetrics topicMetrics = metrics == null ? null : metrics.topic(record.topic());
+        final long start = topicMetrics == null ? 0L : System.nanoTime();
 
-        for (Field field: updatedValue.schema().fields()) {
-            if (field.name().equals(fieldName)) {
-                updatedValue.put(field.name(), record.key() == null ? "": record.key().toString());
-            } else {
-                updatedValue.put(field.name(), value.get(field));
-            }
+        final Map<String, Object> updatedValue;
+        if (schemalessInPlace && value instanceof HashMap) {
+            updatedValue = value;
+        } else {
+            updatedValue = new HashMap<>((int) ((value.size() + 1) / 0.75f) + 1);
+            updatedValue.putAll(value);
+        }
+        putKey(updatedValue, record.key());
+
+        if (topicMetrics != null) {
+            topicMetrics.recordSchemaless(System.nanoTime() - start, updatedValue.size(), 0);
         }
         return record.newRecord(
                 record.topic(),
                 record.kafkaPartition(),
                 record.keySchema(),
                 record.key(),
-                updatedSchema,
+                null,
                 updatedValue,
                 record.timestamp()
         );
     }
 
-    private Schema makeUpdatedSchema(Schema schema) {
+    /*
+        Puts the fields embedding the key into a schemaless value
+     */
+    void putKey(Map<String, Object> target, Object key) {
+        if (keyEmbed == KeyEmbed.STRING) {
+            target.put(fieldName, key == null ? "" : key.toString());
+        } else if (keyEmbed == KeyEmbed.FLATTEN && (key instanceof Map || key instanceof Struct)) {
+            flattenKey(target, key);
+        } else if (keyEmbed == KeyEmbed.PROJECT) {
+            for (int i = 0; i < projectionPaths.length; i++) {
+                target.put(projectionTargets[i], projectSchemaless(projectionPaths[i], key));
+            }
+        } else {
+            target.put(fieldName, key);
+        }
+    }
+
+    /*
+        Puts the leaf entries of a Map or Struct key, nested maps and structs are flattened with an explicit stack
+     */
+    @SuppressWarnings("unchecked")
+    private void flattenKey(Map<String, Object> target, Object key) {
+        final Deque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[]{fieldName, key});
+        while (!stack.isEmpty()) {
+            final Object[] entry = stack.pop();
+            final String prefix = (String) entry[0];
+            if (entry[1] instanceof Map) {
+                for (Map.Entry<String, Object> child : ((Map<String, Object>) entry[1]).entrySet()) {
+                    stack.push(new Object[]{prefix + flattenDelimiter + child.getKey(), child.getValue()});
+                }
+            } else if (entry[1] instanceof Struct) {
+                final Struct struct = (Struct) entry[1];
+                for (Field field : struct.schema().fields()) {
+                    stack.push(new Object[]{prefix + flattenDelimiter + field.name(), struct.get(field)});
+                }
+            } else {
+                target.put(prefix, entry[1]);
+            }
+        }
+    }
+
+    /*
+        Value at the path of a Map or Struct key, null when a part of the path is missing
+     */
+    private static Object projectSchemaless(String[] path, Object key) {
+        Object keyValue = key;
+        for (int i = 0; i < path.length && keyValue != null; i++) {
+            if (keyValue instanceof Map) {
+                keyValue = ((Map<?, ?>) keyValue).get(path[i]);
+            } else if (keyValue instanceof Struct) {
+                final Struct struct = (Struct) keyValue;
+                final Field field = struct.schema().field(path[i]);
+                keyValue = field == null ? null : struct.get(field);
+            } else {
+                return null;
+            }
+        }
+        return keyValue;
+    }
+
+    /*
+        Value of one key field. The key itself when the path is empty, a field of a nested Struct key otherwise
+     */
+    private Object keyValue(Field[] path, Object key) {
+        if (keyEmbed == KeyEmbed.STRING) {
+            return key == null ? "" : key.toString();
+        }
+        Object keyValue = key;
+        for (int i = 0; i < path.length && keyValue != null; i++) {
+            keyValue = requireStruct(keyValue, PURPOSE).get(path[i]);
+        }
+        return keyValue;
+    }
+
+    /*
+        Value of the i-th key field of the plan. Structs are copied into the optional copy of their schema
+     */
+    private Object keyValue(CopyPlan plan, int i, Object key) {
+        final Object keyValue = keyValue(plan.keyPaths[i], key);
+        final Schema schema = plan.keyFields[i].schema();
+        if (!(keyValue instanceof Struct) || ((Struct) keyValue).schema() == schema) {
+            return keyValue;
+        }
+        final Struct source = (Struct) keyValue;
+        final Struct updatedValue = new Struct(schema);
+        for (Field field : schema.fields()) {
+            updatedValue.put(field, source.get(field));
+        }
+        return updatedValue;
+    }
+
+    /*
+        Plan of the schemas for transforms that insert the key themselves
+     */
+    CopyPlan plan(Schema schema, Schema keySchema) {
+        return resolvePlan(schema, keySchema, null, 0L);
+    }
+
+    /*
+        Values of the key fields of the plan, in the order of plan.keyFields
+     */
+    Object[] keyValues(CopyPlan plan, Object key) {
+        final Object[] keyValues = new Object[plan.keyFields.length];
+        for (int i = 0; i < keyValues.length; i++) {
+            keyValues[i] = keyValue(plan, i, key);
+        }
+        return keyValues;
+    }
+
+    /*
+        Cached plan of the schemas, compiled on first use. The key schema only matters when the key is typed
+     */
+    private CopyPlan resolvePlan(Schema schema, Schema keySchema, TransformMetrics.TopicMetrics topicMetrics, long start) {
+        final Schema planKeySchema = keyEmbed == KeyEmbed.STRING ? null : keySchema;
+        CopyPlan plan = lastPlan;
+        if (plan != null && plan.source == schema && plan.keySource == planKeySchema) {
+            if (topicMetrics != null) {
+                topicMetrics.recordCacheHit();
+            }
+            return plan;
+        }
+        final CopyPlan previous = previousPlan;
+        if (previous != null && previous.source == schema && previous.keySource == planKeySchema) {
+            if (topicMetrics != null) {
+                topicMetrics.recordCacheHit();
+            }
+            previousPlan = plan;
+            lastPlan = previous;
+            return previous;
+        }
+
+        final PlanKey planKey = new PlanKey(schema, planKeySchema);
+        plan = schemaUpdateCache.get(planKey);
+        if (plan == null) {
+            plan = compilePlan(schema, planKeySchema);
+            if (topicMetrics != null) {
+                topicMetrics.recordCacheMiss(schemaUpdateCache.size() >= SCHEMA_CACHE_SIZE);
+                topicMetrics.recordCompile(System.nanoTime() - start);
+            }
+            schemaUpdateCache.put(planKey, plan);
+        } else if (topicMetrics != null) {
+            topicMetrics.recordCacheHit();
+        }
+        previousPlan = lastPlan;
+        lastPlan = plan;
+        return plan;
+    }
+
+    private CopyPlan compilePlan(Schema schema, Schema keySchema) {
         final SchemaBuilder builder = SchemaUtil.copySchemaBasics(schema, SchemaBuilder.struct());
         for (Field field : schema.fields()) {
             builder.field(field.name(), field.schema());
         }
-        builder.field(fieldName, Schema.OPTIONAL_STRING_SCHEMA);
 
-        return builder.build();
+        final List<String> keyNames = new ArrayList<>();
+        final List<Field[]> keyPaths = new ArrayList<>();
+        if (keyEmbed == KeyEmbed.STRING) {
+            builder.field(fieldName, Schema.OPTIONAL_STRING_SCHEMA);
+            keyNames.add(fieldName);
+            keyPaths.add(new Field[0]);
+        } else if (keySchema == null) {
+            throw new DataException((keyEmbed == KeyEmbed.PROJECT ? ConfigName.KEY_FIELDS : ConfigName.KEY_EMBED + " " + keyEmbed.name().toLowerCase())
+                    + " requires records with a key schema");
+        } else if (keyEmbed == KeyEmbed.PROJECT) {
+            projectKey(builder, keySchema, keyNames, keyPaths);
+        } else if (keyEmbed == KeyEmbed.TYPED || keySchema.type() != Schema.Type.STRUCT) {
+            // Optional like the other embeddings, so records with a null key still validate
+            builder.field(fieldName, optional(keySchema));
+            keyNames.add(fieldName);
+            keyPaths.add(new Field[0]);
+        } else {
+            flattenKey(builder, keySchema, keyNames, keyPaths);
+        }
+
+        final Schema updatedSchema = builder.build();
+        final Field[] keyFields = new Field[keyNames.size()];
+        for (int i = 0; i < keyFields.length; i++) {
+            keyFields[i] = updatedSchema.field(keyNames.get(i));
+        }
+        return new CopyPlan(schema, keySchema, updatedSchema, keyFields, keyPaths.toArray(new Field[0][]));
+    }
+
+    /*
+        Resolves the configured key paths against the key schema. Projected fields are optional like flattened ones
+     */
+    private void projectKey(SchemaBuilder builder, Schema keySchema, List<String> keyNames, List<Field[]> keyPaths) {
+        for (int i = 0; i < projectionPaths.length; i++) {
+            final Field[] path = new Field[projectionPaths[i].length];
+            Schema current = keySchema;
+            for (int j = 0; j < path.length; j++) {
+                final Field field = current.type() == Schema.Type.STRUCT ? current.field(projectionPaths[i][j]) : null;
+                if (field == null) {
+                    throw new DataException("Key field " + String.join(".", projectionPaths[i]) + " not found in key schema " + keySchema);
+                }
+                path[j] = field;
+                current = field.schema();
+            }
+            builder.field(projectionTargets[i], optional(current));
+            keyNames.add(projectionTargets[i]);
+            keyPaths.add(path);
+        }
+    }
+
+    /*
+        Adds the leaf fields of a Struct key in order, nested structs are flattened with an explicit stack.
+        Leaf fields are optional, since a null key or a null nested struct leaves them without value
+     */
+    private void flattenKey(SchemaBuilder builder, Schema keySchema, List<String> keyNames, List<Field[]> keyPaths) {
+        final Deque<Field[]> stack = new ArrayDeque<>();
+        final List<Field> rootFields = keySchema.fields();
+        for (int i = rootFields.size() - 1; i >= 0; i--) {
+            stack.push(new Field[]{rootFields.get(i)});
+        }
+        while (!stack.isEmpty()) {
+            final Field[] path = stack.pop();
+            final Schema fieldSchema = path[path.length - 1].schema();
+            if (fieldSchema.type() == Schema.Type.STRUCT) {
+                final List<Field> fields = fieldSchema.fields();
+                for (int i = fields.size() - 1; i >= 0; i--) {
+                    final Field[] childPath = Arrays.copyOf(path, path.length + 1);
+                    childPath[path.length] = fields.get(i);
+                    stack.push(childPath);
+                }
+                continue;
+            }
+
+            final StringBuilder name = new StringBuilder(fieldName);
+            for (Field field : path) {
+                name.append(flattenDelimiter).append(field.name());
+            }
+            builder.field(name.toString(), optional(fieldSchema));
+            keyNames.add(name.toString());
+            keyPaths.add(path);
+        }
+    }
+
+    /*
+        Optional copy of the schema. Fields, elements and map entries keep their schemas, so only the top level changes
+     */
+    private static Schema optional(Schema schema) {
+        if (schema.isOptional()) {
+            return schema;
+        }
+        final SchemaBuilder builder;
+        switch (schema.type()) {
+            case STRUCT:
+                builder = SchemaBuilder.struct();
+                for (Field field : schema.fields()) {
+                    builder.field(field.name(), field.schema());
+                }
+                break;
+            case ARRAY:
+                builder = SchemaBuilder.array(schema.valueSchema());
+                break;
+            case MAP:
+                builder = SchemaBuilder.map(schema.keySchema(), schema.valueSchema());
+                break;
+            default:
+                builder = SchemaBuilder.type(schema.type());
+        }
+        return SchemaUtil.copySchemaBasics(schema, builder).optional().build();
+    }
+
+    /*
+        Cache key of the value schema and the key schema, null unless the key is typed
+     */
+    static final class PlanKey {
+        private final Schema schema;
+        private final Schema keySchema;
+
+        PlanKey(Schema schema, Schema keySchema) {
+            this.schema = schema;
+            this.keySchema = keySchema;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final PlanKey that = (PlanKey) o;
+            return schema.equals(that.schema) && Objects.equals(keySchema, that.keySchema);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * schema.hashCode() + Objects.hashCode(keySchema);
+        }
+    }
+
+    /*
+        Updated schema of one pair of source schemas. Source fields keep their position, so the fields of the
+        updated schema are used to read the source values as well. Every key field has the path of key fields it is read from
+     */
+    static final class CopyPlan {
+        private final Schema source;
+        private final Schema keySource;
+        final Schema schema;
+        private final Field[] fields;
+        private final Field[] keyFields;
+        private final Field[][] keyPaths;
+
+        private CopyPlan(Schema source, Schema keySource, Schema schema, Field[] keyFields, Field[][] keyPaths) {
+            this.source = source;
+            this.keySource = keySource;
+            this.schema = schema;
+            this.fields = schema.fields().subList(0, source.fields().size()).toArray(new Field[0]);
+            this.keyFields = keyFields;
+            this.keyPaths = keyPaths;
+        }
     }
 
     @Override
     public void close() {
+        closeMetrics();
+        lastPlan = null;
+        previousPlan = null;
     }
 
     @Override
@@ -94,4 +552,4 @@ public class KeyToValue<R extends ConnectRecord<R>> implements Transformation<R>
         return CONFIG_DEF;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.connect.data.Struct;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts the elements of large lists across a bounded fork-join pool.
+ * Every element is written to its own slot, so element order is preserved.
+ * Converters with the same number of threads share one pool in the JVM, released with its last user.
+ */
+final class ParallelListConverter {
+    private static final int MIN_CHUNK_SIZE = 256;
+
+    /*
+        Marks null Struct elements, which are dropped like in sequential conversion
+     */
+    private static final Object DROPPED = new Object();
+
+    private static final Map<Integer, SharedPool> POOLS = new HashMap<>();
+
+    private final int threshold;
+    private final int threads;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<ConversionEngine> engines;
+    private boolean closed;
+
+    /*
+        dataKeyNaming is null unless maps with data keys are detected, see ConversionEngine
+     */
+    ParallelListConverter(FieldNaming converter, FieldNaming dataKeyNaming, int threshold, int threads) {
+        this.threshold = threshold;
+        this.threads = threads;
+        this.pool = acquirePool(threads);
+        this.engines = ThreadLocal.withInitial(() -> new ConversionEngine(converter, dataKeyNaming, this));
+    }
+
+    boolean accepts(List<?> value) {
+        return value.size() >= threshold;
+    }
+
+    /*
+        Create updated list based on the compiled array plan
+     */
+    List<Object> convertList(ConversionPlan plan, List<?> value) {
+        return convert(plan.element, value);
+    }
+
+    /*
+        Create new schema less list based on conversion rules
+     */
+    List<Object> convertSchemalessList(List<?> value) {
+        return convert(null, value);
+    }
+
+    private List<Object> convert(ConversionPlan element, List<?> value) {
+        final Object[] source = value.toArray();
+        final Object[] results = new Object[source.length];
+        final int chunkSize = Math.max(MIN_CHUNK_SIZE, source.length / (pool.getParallelism() * 4));
+        final ConvertTask task = new ConvertTask(element, source, results, 0, source.length, chunkSize);
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke(); // nested large list, already running on one of our workers
+        } else {
+            pool.invoke(task);
+        }
+
+        final List<Object> updatedList = new ArrayList<>(results.length);
+        for (Object result : results) {
+            if (result != DROPPED) {
+                updatedList.add(result);
+            }
+        }
+        return updatedList;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object convertElement(ConversionEngine engine, ConversionPlan element, Object value) {
+        if (element == null) {
+            if (value instanceof Map) {
+                return engine.convertMap((Map<String, Object>) value);
+            } else if (value instanceof List) {
+                return engine.convertSchemalessList((List<?>) value);
+            }
+            return value;
+        }
+        if (value == null) {
+            return DROPPED;
+        }
+        if (element.kind == ConversionPlan.STRUCT) {
+            final Struct updatedValue = engine.convertStruct(element, (Struct) value);
+            return updatedValue == null ? DROPPED : updatedValue;
+        }
+        return engine.convertList(element, (List<?>) value);
+    }
+
+    /*
+        Releases the pool, it is shut down with its last user
+     */
+    void close() {
+        synchronized (POOLS) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            final SharedPool shared = POOLS.get(threads);
+            if (shared != null && --shared.references == 0) {
+                POOLS.remove(threads);
+                shared.pool.shutdown();
+            }
+        }
+    }
+
+    static int pools() {
+        synchronized (POOLS) {
+            return POOLS.size();
+        }
+    }
+
+    private static ForkJoinPool acquirePool(int threads) {
+        synchronized (POOLS) {
+            final SharedPool shared = POOLS.computeIfAbsent(threads, SharedPool::new);
+            shared.references++;
+            return shared.pool;
+        }
+    }
+
+    private static final class SharedPool {
+        private final ForkJoinPool pool;
+        private int references;
+
+        private SharedPool(int threads) {
+            this.pool = new ForkJoinPool(threads);
+        }
+    }
+
+    private final class ConvertTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ConversionPlan element;
+        private final Object[] source;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        private ConvertTask(ConversionPlan element, Object[] source, Object[] results, int from, int to, int chunkSize) {
+            this.element = element;
+            this.source = source;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                final ConversionEngine engine = engines.get();
+                for (int i = from; i < to; i++) {
+                    results[i] = convertElement(engine, element, source[i]);
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new ConvertTask(element, source, results, from, middle, chunkSize),
+                    new ConvertTask(element, source, results, middle, to, chunkSize));
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.common.config.ConfigException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Immutable table of explicit field renames read from a UTF-8 file with one {@code old:new} per line.
+ * Spaces and tabs around both names are ignored, blank lines and lines starting with {@code #} are skipped.
+ * The file is copied once into an off-heap buffer, so later edits of the file do not affect the table.
+ * The heap only holds an open addressing table of line offsets, so large dictionaries load quickly. Thread safe.
+ */
+final class RenameTable {
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final long FNV64_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV64_PRIME = 0x100000001b3L;
+
+    private final String file;
+    /*
+        Hash of the whole file, so tables of an edited file are not equal
+     */
+    private final long digest;
+    private final ByteBuffer buffer;
+    /*
+        Hash of the old name in the high half, line offset + 1 in the low half. 0 is an empty slot
+     */
+    private final long[] slots;
+    private final int mask;
+    private final int size;
+
+    private RenameTable(String file, long digest, ByteBuffer buffer, int lines) {
+        this.file = file;
+        this.digest = digest;
+        this.buffer = buffer;
+        int capacity = 2;
+        while (capacity < lines * 2) {
+            capacity <<= 1;
+        }
+        this.slots = new long[capacity];
+        this.mask = capacity - 1;
+        this.size = index();
+    }
+
+    /*
+        Copies the file instead of mapping it, a mapped file that is truncated while in use crashes the JVM
+     */
+    static RenameTable open(String file) {
+        final Path path = Paths.get(file);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ConfigException("Rename file " + file + " is larger than 2 GB");
+            }
+            final ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            int lines = 1;
+            long digest = FNV64_OFFSET;
+            for (int i = 0; i < buffer.limit(); i++) {
+                final byte b = buffer.get(i);
+                if (b == '\n') {
+                    lines++;
+                }
+                digest = (digest ^ (b & 0xff)) * FNV64_PRIME;
+            }
+            return new RenameTable(file, digest, buffer, lines);
+        } catch (IOException e) {
+            throw new ConfigException("Cannot read rename file " + file + ": " + e.getMessage());
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /*
+        New name of the field, null when the file does not rename it
+     */
+    String get(String fieldName) {
+        byte[] encoded = null;
+        int hash = FNV_OFFSET;
+        for (int i = 0; i < fieldName.length(); i++) {
+            final char c = fieldName.charAt(i);
+            if (c >= 0x80) {
+                encoded = fieldName.getBytes(StandardCharsets.UTF_8);
+                hash = hash(encoded);
+                break;
+            }
+            hash = (hash ^ c) * FNV_PRIME;
+        }
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            final long entry = slots[slot];
+            if (entry == 0L) {
+                return null;
+            }
+            final int start = (int) entry - 1;
+            if ((int) (entry >>> 32) == hash && keyEquals(start, fieldName, encoded)) {
+                int valueStart = start + (encoded == null ? fieldName.length() : encoded.length);
+                while (buffer.get(valueStart) != ':') {
+                    valueStart++;
+                }
+                valueStart = skipBlanks(valueStart + 1);
+                return decode(valueStart, trimEnd(valueStart, lineEnd(valueStart)));
+            }
+        }
+    }
+
+    /*
+        Scans every line once and fills the slots, returns the number of renames
+     */
+    private int index() {
+        int count = 0;
+        int lineNumber = 0;
+        int start = 0;
+        while (start < buffer.limit()) {
+            lineNumber++;
+            final int end = lineEnd(start);
+            int next = end;
+            while (next < buffer.limit() && (buffer.get(next) == '\r' || buffer.get(next) == '\n')) {
+                next++;
+            }
+            final int keyStart = skipBlanks(start);
+            if (keyStart < end && buffer.get(keyStart) != '#') {
+                int separator = keyStart;
+                while (separator < end && buffer.get(separator) != ':') {
+                    separator++;
+                }
+                final int keyEnd = trimEnd(keyStart, separator);
+                final int valueStart = separator < end ? skipBlanks(separator + 1) : end;
+                if (keyEnd == keyStart || trimEnd(valueStart, end) == valueStart) {
+                    throw new ConfigException("Rename file " + file + " line " + lineNumber + " is not old:new");
+                }
+                insert(keyStart, keyEnd, lineNumber);
+                count++;
+            }
+            start = next;
+        }
+        return count;
+    }
+
+    private void insert(int start, int keyEnd, int lineNumber) {
+        int hash = FNV_OFFSET;
+        for (int i = start; i < keyEnd; i++) {
+            hash = (hash ^ (buffer.get(i) & 0xff)) * FNV_PRIME;
+        }
+        int slot = hash & mask;
+        while (slots[slot] != 0L) {
+            final int other = (int) slots[slot] - 1;
+            if ((int) (slots[slot] >>> 32) == hash && bytesEqual(other, start, keyEnd - start)) {
+                throw new ConfigException("Rename file " + file + " line " + lineNumber + " renames "
+                        + decode(start, keyEnd) + " again");
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = ((long) hash << 32) | (start + 1L);
+    }
+
+    private boolean bytesEqual(int other, int start, int length) {
+        if (!keyEndsAt(other + length)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(other + i) != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        ASCII names are compared char by char, others by their UTF-8 bytes
+     */
+    private boolean keyEquals(int start, String fieldName, byte[] encoded) {
+        final int length = encoded == null ? fieldName.length() : encoded.length;
+        if (!keyEndsAt(start + length)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != (encoded == null ? (byte) fieldName.charAt(i) : encoded[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        True when only blanks are left before the separator, i.e. the old name ends at position
+     */
+    private boolean keyEndsAt(int position) {
+        for (int i = position; i < buffer.limit(); i++) {
+            final byte b = buffer.get(i);
+            if (b == ':') {
+                return true;
+            }
+            if (b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private int skipBlanks(int start) {
+        int position = start;
+        while (position < buffer.limit() && (buffer.get(position) == ' ' || buffer.get(position) == '\t')) {
+            position++;
+        }
+        return position;
+    }
+
+    private int trimEnd(int start, int end) {
+        int position = end;
+        while (position > start && (buffer.get(position - 1) == ' ' || buffer.get(position - 1) == '\t')) {
+            position--;
+        }
+        return position;
+    }
+
+    private int lineEnd(int start) {
+        int end = start;
+        while (end < buffer.limit() && buffer.get(end) != '\n' && buffer.get(end) != '\r') {
+            end++;
+        }
+        return end;
+    }
+
+    private String decode(int start, int end) {
+        final byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = FNV_OFFSET;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /*
+        Tables of the same file content rename alike, so converters using them can share compiled plans
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final RenameTable that = (RenameTable) o;
+        return digest == that.digest && buffer.limit() == that.buffer.limit() && file.equals(that.file);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * file.hashCode() + Long.hashCode(digest);
+    }
+}
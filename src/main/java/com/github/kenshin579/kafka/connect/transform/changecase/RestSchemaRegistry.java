@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.avro.Schema;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.errors.DataException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal client of the Confluent schema registry REST API.
+ * URLs are tried in order until one of them answers.
+ */
+final class RestSchemaRegistry implements SchemaRegistry {
+    private static final String CONTENT_TYPE = "application/vnd.schemaregistry.v1+json";
+    private static final int TIMEOUT_MS = 10000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<String> baseUrls;
+
+    RestSchemaRegistry(List<String> urls) {
+        if (urls.isEmpty()) {
+            throw new ConfigException("At least one schema registry URL is required");
+        }
+        baseUrls = new ArrayList<>();
+        for (String url : urls) {
+            baseUrls.add(url.endsWith("/") ? url.substring(0, url.length() - 1) : url);
+        }
+    }
+
+    @Override
+    public Schema getById(int id) throws IOException {
+        final JsonNode response = request("GET", "/schemas/ids/" + id, null);
+        try {
+            return new Schema.Parser().parse(response.get("schema").asText());
+        } catch (RuntimeException e) {
+            throw new DataException("Schema " + id + " is not a valid Avro schema", e);
+        }
+    }
+
+    @Override
+    public int register(String subject, Schema schema) throws IOException {
+        final ObjectNode body = MAPPER.createObjectNode().put("schema", schema.toString());
+        final String path = "/subjects/" + URLEncoder.encode(subject, "UTF-8") + "/versions";
+        return request("POST", path, body).get("id").asInt();
+    }
+
+    private JsonNode request(String method, String path, JsonNode body) throws IOException {
+        IOException failure = null;
+        for (String baseUrl : baseUrls) {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            try {
+                connection.setRequestMethod(method);
+                connection.setConnectTimeout(TIMEOUT_MS);
+                connection.setReadTimeout(TIMEOUT_MS);
+                connection.setRequestProperty("Accept", CONTENT_TYPE);
+                if (body != null) {
+                    connection.setDoOutput(true);
+                    connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+                    try (OutputStream out = connection.getOutputStream()) {
+                        out.write(MAPPER.writeValueAsBytes(body));
+                    }
+                }
+                final int status = connection.getResponseCode();
+                if (status >= 200 && status < 300) {
+                    try (InputStream in = connection.getInputStream()) {
+                        return MAPPER.readTree(in);
+                    }
+                }
+                final String error = readError(connection);
+                if (status >= 400 && status < 500) {
+                    throw new DataException(method + " " + baseUrl + path + " returned " + status + ": " + error);
+                }
+                failure = new IOException(method + " " + baseUrl + path + " returned " + status + ": " + error);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                connection.disconnect();
+            }
+        }
+        throw failure;
+    }
+
+    private static String readError(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getErrorStream()) {
+            if (in == null) {
+                return "";
+            }
+            final StringBuilder error = new StringBuilder();
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                error.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+            }
+            return error.toString();
+        }
+    }
+}
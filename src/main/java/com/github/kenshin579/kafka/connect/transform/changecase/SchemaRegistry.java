@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.avro.Schema;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The part of the Confluent schema registry API needed to swap writer schema IDs.
+ * IOException signals a transport failure, unknown IDs and rejected schemas are reported as DataException.
+ */
+interface SchemaRegistry {
+    Schema getById(int id) throws IOException;
+
+    /*
+        Registers schema under subject and returns its global ID. Registering an existing schema returns its ID
+     */
+    int register(String subject, Schema schema) throws IOException;
+
+    static SchemaRegistry forUrls(List<String> urls) {
+        return new RestSchemaRegistry(urls);
+    }
+}
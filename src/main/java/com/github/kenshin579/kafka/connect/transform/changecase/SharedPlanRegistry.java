@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.common.cache.Cache;
+import org.apache.kafka.common.cache.LRUCache;
+import org.apache.kafka.common.cache.SynchronizedCache;
+import org.apache.kafka.connect.data.Schema;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * JVM-wide compiled plans, shared by every transform instance with the same conversion rules and cache size.
+ * Each pair gets one bounded cache that is reference counted and released with its last user,
+ * so deleting the connectors frees the plans.
+ */
+final class SharedPlanRegistry {
+    private static final Map<Key, Entry> ENTRIES = new HashMap<>();
+
+    private SharedPlanRegistry() {
+    }
+
+    /*
+        Returns the shared cache of the conversion rules. Instances asking for another size get a cache of their own
+     */
+    static synchronized Cache<Schema, ConversionPlan> acquire(FieldNameConverter converter, int size) {
+        final Key key = new Key(converter, size);
+        Entry entry = ENTRIES.get(key);
+        if (entry == null) {
+            entry = new Entry(new SynchronizedCache<>(new LRUCache<>(size)));
+            ENTRIES.put(key, entry);
+        }
+        entry.references++;
+        return entry.cache;
+    }
+
+    static synchronized void release(FieldNameConverter converter, int size) {
+        final Key key = new Key(converter, size);
+        final Entry entry = ENTRIES.get(key);
+        if (entry != null && --entry.references == 0) {
+            ENTRIES.remove(key);
+        }
+    }
+
+    static synchronized int size() {
+        return ENTRIES.size();
+    }
+
+    private static final class Key {
+        private final FieldNameConverter converter;
+        private final int size;
+
+        private Key(FieldNameConverter converter, int size) {
+            this.converter = converter;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return size == that.size && converter.equals(that.converter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(converter, size);
+        }
+    }
+
+    private static final class Entry {
+        private final Cache<Schema, ConversionPlan> cache;
+        private int references;
+
+        private Entry(Cache<Schema, ConversionPlan> cache) {
+            this.cache = cache;
+        }
+    }
+}
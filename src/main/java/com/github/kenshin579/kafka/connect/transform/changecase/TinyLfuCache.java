@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.common.cache.Cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache with TinyLFU admission. Every lookup is counted in a small count-min sketch and, once the cache is full,
+ * a new entry only replaces the least recently used one when it was looked up more often. One-shot keys therefore
+ * cannot evict the names that repeat from record to record. Not thread safe, wrap it in a SynchronizedCache.
+ *
+ * @param <K>
+ * @param <V>
+ */
+final class TinyLfuCache<K, V> implements Cache<K, V> {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9e3779b9, 0x85ebca6b, 0xc2b2ae35, 0x27d4eb2f};
+
+    private final int maxSize;
+    private final LinkedHashMap<K, V> entries;
+    private final byte[] counters;
+    private final int mask;
+    /*
+        Counts are halved after this many lookups, so past popularity fades
+     */
+    private final int sampleSize;
+    private int samples;
+
+    TinyLfuCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        int width = 16;
+        while (width < maxSize * 2) {
+            width <<= 1;
+        }
+        this.counters = new byte[width * DEPTH];
+        this.mask = width - 1;
+        this.sampleSize = Math.max(maxSize, 16) * 10;
+    }
+
+    @Override
+    public V get(K key) {
+        increment(key);
+        return entries.get(key);
+    }
+
+    /*
+        Entries that are not admitted are dropped silently, like an immediate eviction
+     */
+    @Override
+    public void put(K key, V value) {
+        if (entries.containsKey(key) || entries.size() < maxSize) {
+            entries.put(key, value);
+            return;
+        }
+        final Iterator<Map.Entry<K, V>> eldest = entries.entrySet().iterator();
+        if (eldest.hasNext() && frequency(key) > frequency(eldest.next().getKey())) {
+            eldest.remove();
+            entries.put(key, value);
+        }
+    }
+
+    @Override
+    public boolean remove(K key) {
+        return entries.remove(key) != null;
+    }
+
+    @Override
+    public long size() {
+        return entries.size();
+    }
+
+    private void increment(K key) {
+        final int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            final int index = slot(hash, row);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                added = true;
+            }
+        }
+        if (added && ++samples == sampleSize) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>= 1;
+            }
+            samples /= 2;
+        }
+    }
+
+    /*
+        Smallest count of the key over the rows, an upper bound of its lookups
+     */
+    private int frequency(K key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[slot(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private int slot(int hash, int row) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return row * (mask + 1) + (h & mask);
+    }
+
+    private static int spread(int hash) {
+        final int h = hash * 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
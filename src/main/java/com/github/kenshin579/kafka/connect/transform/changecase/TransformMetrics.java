@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.KafkaMetricsContext;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.CumulativeCount;
+import org.apache.kafka.common.metrics.stats.CumulativeSum;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Percentile;
+import org.apache.kafka.common.metrics.stats.Percentiles;
+import org.apache.kafka.common.metrics.stats.Rate;
+import org.apache.kafka.common.utils.Time;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per transform and topic metrics, registered with Kafka's metrics library and exposed over JMX as
+ * kafka.connect.transforms:type=&lt;group&gt;,transform=&lt;name&gt;,topic=&lt;topic&gt;.
+ * Instances with the same group and name share their sensors, e.g. all tasks of a connector.
+ * Latencies are in microseconds, compile times in nanoseconds.
+ */
+final class TransformMetrics {
+    static final String JMX_PREFIX = "kafka.connect.transforms";
+
+    /*
+        4096 buckets growing linearly up to 10 s, the first ones about 1 us wide
+     */
+    private static final int PERCENTILES_SIZE_IN_BYTES = 16384;
+    private static final double MAX_LATENCY_US = 10_000_000;
+    private static final double NS_PER_US = 1000.0;
+
+    private static Metrics metrics;
+    private static final Map<String, Integer> REFERENCES = new HashMap<>();
+    private static final Map<String, List<String>> SENSORS = new HashMap<>();
+
+    private final String group;
+    private final String transform;
+    private final String key;
+    private final ConcurrentMap<String, TopicMetrics> topics = new ConcurrentHashMap<>();
+    private boolean closed;
+
+    private TransformMetrics(String group, String transform) {
+        this.group = group;
+        this.transform = transform;
+        this.key = group + ":" + transform;
+    }
+
+    static synchronized TransformMetrics register(String group, String transform) {
+        if (metrics == null) {
+            metrics = new Metrics(new MetricConfig(), Collections.singletonList(new JmxReporter()),
+                    Time.SYSTEM, new KafkaMetricsContext(JMX_PREFIX));
+        }
+        final TransformMetrics transformMetrics = new TransformMetrics(group, transform);
+        REFERENCES.merge(transformMetrics.key, 1, Integer::sum);
+        return transformMetrics;
+    }
+
+    /*
+        Sensors are removed with the last instance of the transform, the registry with the last transform
+     */
+    void close() {
+        synchronized (TransformMetrics.class) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (REFERENCES.merge(key, -1, Integer::sum) > 0) {
+                return;
+            }
+            REFERENCES.remove(key);
+            final List<String> sensors = SENSORS.remove(key);
+            if (sensors != null) {
+                sensors.forEach(metrics::removeSensor);
+            }
+            if (REFERENCES.isEmpty()) {
+                metrics.close();
+                metrics = null;
+            }
+        }
+    }
+
+    TopicMetrics topic(String topic) {
+        final TopicMetrics topicMetrics = topics.get(topic);
+        return topicMetrics != null ? topicMetrics : topics.computeIfAbsent(topic, TopicMetrics::new);
+    }
+
+    final class TopicMetrics {
+        private final Sensor records;
+        private final Sensor schemaLatency;
+        private final Sensor schemalessLatency;
+        private final Sensor cacheHits;
+        private final Sensor cacheMisses;
+        private final Sensor cacheEvictions;
+        private final Sensor compileTime;
+        private final Sensor fieldsConverted;
+        private final Sensor fieldsDropped;
+        private final Sensor passthrough;
+
+        private TopicMetrics(String topic) {
+            synchronized (TransformMetrics.class) {
+                final Map<String, String> tags = new LinkedHashMap<>();
+                tags.put("transform", transform);
+                tags.put("topic", topic);
+
+                records = sensor(topic, "records", tags, (sensor, names) -> {
+                    sensor.add(names.name("record-rate", "Records converted per second"), new Rate());
+                    sensor.add(names.name("record-total", "Records converted"), new CumulativeCount());
+                });
+                schemaLatency = latencySensor(topic, "schema-latency", tags, "records with schema");
+                schemalessLatency = latencySensor(topic, "schemaless-latency", tags, "schemaless records");
+                cacheHits = countSensor(topic, "schema-cache-hit-total", tags, "Schema cache hits");
+                cacheMisses = countSensor(topic, "schema-cache-miss-total", tags, "Schema cache misses");
+                cacheEvictions = countSensor(topic, "schema-cache-eviction-total", tags, "Schemas evicted from the cache");
+                compileTime = sensor(topic, "schema-compile", tags, (sensor, names) -> {
+                    sensor.add(names.name("schema-compile-total", "Schemas compiled"), new CumulativeCount());
+                    sensor.add(names.name("schema-compile-time-avg", "Average schema compile time in ns"), new Avg());
+                    sensor.add(names.name("schema-compile-time-total", "Total schema compile time in ns"), new CumulativeSum());
+                });
+                fieldsConverted = sumSensor(topic, "fields-converted-total", tags, "Fields written with their converted name");
+                fieldsDropped = sumSensor(topic, "fields-dropped-total", tags, "Fields dropped by the whitelist or blacklist");
+                passthrough = countSensor(topic, "passthrough-total", tags, "Records passed through without conversion");
+            }
+        }
+
+        void recordSchema(long latencyNs, long converted, long dropped) {
+            records.record();
+            schemaLatency.record(latencyNs / NS_PER_US);
+            recordFields(converted, dropped);
+        }
+
+        void recordSchemaless(long latencyNs, long converted, long dropped) {
+            records.record();
+            schemalessLatency.record(latencyNs / NS_PER_US);
+            recordFields(converted, dropped);
+        }
+
+        private void recordFields(long converted, long dropped) {
+            fieldsConverted.record(converted);
+            if (dropped > 0) {
+                fieldsDropped.record(dropped);
+            }
+        }
+
+        void recordCacheHit() {
+            cacheHits.record();
+        }
+
+        void recordCacheMiss(boolean eviction) {
+            cacheMisses.record();
+            if (eviction) {
+                cacheEvictions.record();
+            }
+        }
+
+        void recordCompile(long compileTimeNs) {
+            compileTime.record(compileTimeNs);
+        }
+
+        void recordPassthrough() {
+            passthrough.record();
+        }
+    }
+
+    private interface MetricNames {
+        MetricName name(String name, String description);
+    }
+
+    private interface SensorStats {
+        void add(Sensor sensor, MetricNames names);
+    }
+
+    /*
+        Shared sensors are created once, later instances pick up the existing ones
+     */
+    private Sensor sensor(String topic, String suffix, Map<String, String> tags, SensorStats stats) {
+        final String name = key + ":" + topic + ":" + suffix;
+        Sensor sensor = metrics.getSensor(name);
+        if (sensor == null) {
+            sensor = metrics.sensor(name);
+            stats.add(sensor, (metricName, description) -> metrics.metricName(metricName, group, description, tags));
+            SENSORS.computeIfAbsent(key, k -> new ArrayList<>()).add(name);
+        }
+        return sensor;
+    }
+
+    private Sensor countSensor(String topic, String name, Map<String, String> tags, String description) {
+        return sensor(topic, name, tags, (sensor, names) -> sensor.add(names.name(name, description), new CumulativeCount()));
+    }
+
+    private Sensor sumSensor(String topic, String name, Map<String, String> tags, String description) {
+        return sensor(topic, name, tags, (sensor, names) -> sensor.add(names.name(name, description), new CumulativeSum()));
+    }
+
+    private Sensor latencySensor(String topic, String name, Map<String, String> tags, String records) {
+        return sensor(topic, name, tags, (sensor, names) -> {
+            sensor.add(names.name(name + "-avg", "Average latency of " + records + " in us"), new Avg());
+            sensor.add(names.name(name + "-max", "Maximum latency of " + records + " in us"), new Max());
+            sensor.add(new Percentiles(PERCENTILES_SIZE_IN_BYTES, MAX_LATENCY_US, Percentiles.BucketSizing.LINEAR,
+                    new Percentile(names.name(name + "-p50", "Median latency of " + records + " in us"), 50),
+                    new Percentile(names.name(name + "-p99", "99th percentile latency of " + records + " in us"), 99),
+                    new Percentile(names.name(name + "-p999", "99.9th percentile latency of " + records + " in us"), 99.9)));
+        });
+    }
+}
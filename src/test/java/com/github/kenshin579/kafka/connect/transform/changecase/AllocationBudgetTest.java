@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Steady state heap cost per record. Budgets are upper bounds of bytes allocated per converted record,
+ * lower them when an optimization lands so regressions fail the build.
+ */
+public class AllocationBudgetTest {
+    private static final int WARMUP_RECORDS = 20_000;
+    private static final int MEASURED_RECORDS = 20_000;
+
+    private static final long SCHEMA_BUDGET = 400;
+    private static final long SCHEMALESS_BUDGET = 800;
+    private static final long KEY_TO_VALUE_BUDGET = 320;
+
+    private final ConvertCase<SinkRecord> xformValue = new ConvertCase.Value<>();
+    private final KeyToValue<SinkRecord> xformKeyToValue = new KeyToValue<>();
+    private com.sun.management.ThreadMXBean threads;
+
+    private final Schema schema = SchemaBuilder.struct().name("Person")
+            .field("first_name", Schema.STRING_SCHEMA)
+            .field("last_name", Schema.STRING_SCHEMA)
+            .field("address_number", Schema.INT32_SCHEMA)
+            .field("salary", Schema.FLOAT64_SCHEMA)
+            .field("living", Schema.BOOLEAN_SCHEMA)
+            .field("inner_most", SchemaBuilder.struct().field("media_type", Schema.STRING_SCHEMA).build())
+            .build();
+
+    @Before
+    public void setup() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+    }
+
+    @After
+    public void teardown() {
+        xformValue.close();
+        xformKeyToValue.close();
+    }
+
+    private Struct value() {
+        return new Struct(schema)
+                .put("first_name", "first")
+                .put("last_name", "last")
+                .put("address_number", 123)
+                .put("salary", 100.32)
+                .put("living", true)
+                .put("inner_most", new Struct(schema.field("inner_most").schema()).put("media_type", "TestMediaType"));
+    }
+
+    private Map<String, Object> schemalessValue() {
+        final Map<String, Object> value = new HashMap<>();
+        value.put("first_name", "first");
+        value.put("last_name", "last");
+        value.put("address_number", 123);
+        value.put("salary", 100.32);
+        value.put("living", true);
+        value.put("inner_most", Collections.singletonMap("media_type", "TestMediaType"));
+        return value;
+    }
+
+    /*
+        Bytes allocated per record by the transform after warm up. The record itself is created up front
+     */
+    private long bytesPerRecord(Transformation<SinkRecord> transform, SinkRecord record) {
+        long blackhole = 0;
+        for (int i = 0; i < WARMUP_RECORDS; i++) {
+            blackhole += System.identityHashCode(transform.apply(record)) & 1;
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_RECORDS; i++) {
+            blackhole += System.identityHashCode(transform.apply(record)) & 1;
+        }
+        final long bytes = (threads.getThreadAllocatedBytes(threadId) - start) / MEASURED_RECORDS;
+        assertTrue(blackhole >= 0);
+        return bytes;
+    }
+
+    @Test
+    public void convertCaseSchema() {
+        xformValue.configure(Collections.singletonMap("convert.from.to", "snakeunderscore2camel"));
+
+        final SinkRecord record = new SinkRecord("test", 0, null, null, schema, value(), 0);
+        final long bytes = bytesPerRecord(xformValue, record);
+        assertTrue("Allocated " + bytes + " bytes per record, budget is " + SCHEMA_BUDGET, bytes <= SCHEMA_BUDGET);
+    }
+
+    @Test
+    public void convertCaseSchemaless() {
+        xformValue.configure(Collections.singletonMap("convert.from.to", "snakeunderscore2camel"));
+
+        final SinkRecord record = new SinkRecord("test", 0, null, null, null, schemalessValue(), 0);
+        final long bytes = bytesPerRecord(xformValue, record);
+        assertTrue("Allocated " + bytes + " bytes per record, budget is " + SCHEMALESS_BUDGET, bytes <= SCHEMALESS_BUDGET);
+    }
+
+    @Test
+    public void keyToValue() {
+        xformKeyToValue.configure(Collections.singletonMap("key.field.name", "record_key"));
+
+        final SinkRecord record = new SinkRecord("test", 0, Schema.STRING_SCHEMA, "key", schema, value(), 0);
+        final long bytes = bytesPerRecord(xformKeyToValue, record);
+        assertTrue("Allocated " + bytes + " bytes per record, budget is " + KEY_TO_VALUE_BUDGET, bytes <= KEY_TO_VALUE_BUDGET);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConvertCaseAvroTest {
+
+    private static final Schema SCHEMA = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"Order\",\"fields\":["
+            + "{\"name\":\"order_id\",\"type\":\"long\"},"
+            + "{\"name\":\"customer\",\"type\":[\"null\",{\"type\":\"record\",\"name\":\"Customer\",\"fields\":["
+            + "{\"name\":\"first_name\",\"type\":\"string\"}]}],\"default\":null},"
+            + "{\"name\":\"line_items\",\"type\":{\"type\":\"array\",\"items\":{\"type\":\"record\",\"name\":\"LineItem\",\"fields\":["
+            + "{\"name\":\"unit_price\",\"type\":\"double\"}]}}}]}");
+
+    private ConvertCaseAvro<SinkRecord> xformValue = new ConvertCaseAvro.Value<>();
+    private final MockSchemaRegistry schemaRegistry = new MockSchemaRegistry();
+
+    @After
+    public void teardown() {
+        xformValue.close();
+    }
+
+    private static byte[] serialize(int schemaId, GenericRecord record) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0);
+        out.write(ByteBuffer.allocate(4).putInt(schemaId).array());
+        final BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new GenericDatumWriter<GenericRecord>(record.getSchema()).write(record, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    private GenericRecord order() {
+        final GenericRecord customer = new GenericData.Record(SCHEMA.getField("customer").schema().getTypes().get(1));
+        customer.put("first_name", "whatever");
+        final GenericRecord lineItem = new GenericData.Record(SCHEMA.getField("line_items").schema().getElementType());
+        lineItem.put("unit_price", 100.32);
+        final GenericRecord order = new GenericData.Record(SCHEMA);
+        order.put("order_id", 123L);
+        order.put("customer", customer);
+        order.put("line_items", Collections.singletonList(lineItem));
+        return order;
+    }
+
+    private void configure(String convertFromTo) {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", convertFromTo);
+        props.put("schema.registry.url", "http://localhost:8081");
+        xformValue.configure(props);
+        xformValue.schemaRegistry(schemaRegistry);
+    }
+
+    @Test
+    public void schemaIdSwappedPayloadUntouched() throws IOException {
+        configure("snakeunderscore2camel");
+        final int schemaId = schemaRegistry.register("orders-value", SCHEMA);
+        final byte[] value = serialize(schemaId, order());
+
+        final SinkRecord transformedRecord = xformValue.apply(new SinkRecord("orders", 0, null, null, null, value, 0));
+        final byte[] updatedValue = (byte[]) transformedRecord.value();
+
+        final int convertedId = ByteBuffer.wrap(updatedValue, 1, 4).getInt();
+        assertNotEquals(schemaId, convertedId);
+        assertEquals(Collections.singletonList(convertedId), schemaRegistry.versions("orders-value-converted"));
+        assertArrayEquals(Arrays.copyOfRange(value, 5, value.length), Arrays.copyOfRange(updatedValue, 5, updatedValue.length));
+
+        final Schema converted = schemaRegistry.getById(convertedId);
+        assertTrue(converted.getField("orderId").aliases().contains("order_id"));
+        final GenericRecord decoded = new GenericDatumReader<GenericRecord>(converted).read(null,
+                DecoderFactory.get().binaryDecoder(updatedValue, 5, updatedValue.length - 5, null));
+        assertEquals(123L, decoded.get("orderId"));
+        assertEquals("whatever", ((GenericRecord) decoded.get("customer")).get("firstName").toString());
+        assertEquals(100.32, ((GenericRecord) ((java.util.List) decoded.get("lineItems")).get(0)).get("unitPrice"));
+
+        final SinkRecord secondRecord = xformValue.apply(new SinkRecord("orders", 0, null, null, null, value, 1));
+        assertArrayEquals(updatedValue, (byte[]) secondRecord.value());
+        assertEquals(1, schemaRegistry.versions("orders-value-converted").size());
+    }
+
+    @Test
+    public void unchangedSchemaReturnsSameRecord() throws IOException {
+        configure("lowercase");
+        final int schemaId = schemaRegistry.register("orders-value", SCHEMA);
+
+        final SinkRecord record = new SinkRecord("orders", 0, null, null, null, serialize(schemaId, order()), 0);
+        assertSame(record, xformValue.apply(record));
+    }
+
+    @Test (expected = ConfigException.class)
+    public void blacklistRejected() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("blacklist", "order_id");
+        props.put("schema.registry.url", "http://localhost:8081");
+        xformValue.configure(props);
+    }
+
+    @Test (expected = ConfigException.class)
+    public void emptyRegistryUrlRejected() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("schema.registry.url", "");
+        xformValue.configure(props);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConvertCaseJsonTest {
+
+    private ConvertCaseJson<SinkRecord> xformValue = new ConvertCaseJson.Value<>();
+    private ConvertCaseJson<SinkRecord> xformKey = new ConvertCaseJson.Key<>();
+
+    @After
+    public void teardown() {
+        xformValue.close();
+        xformKey.close();
+    }
+
+    private String applyValue(String json) {
+        final SinkRecord record = new SinkRecord("test", 0, null, null, Schema.BYTES_SCHEMA,
+                json.getBytes(StandardCharsets.UTF_8), 0);
+        final SinkRecord transformedRecord = xformValue.apply(record);
+        assertEquals(Schema.BYTES_SCHEMA, transformedRecord.valueSchema());
+        return new String((byte[]) transformedRecord.value(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void bytesNestedSnakeUnderscore2Camel() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        xformValue.configure(props);
+
+        final String json = "{\"first_name\": \"last_name\", \"salary\":1.000e10,"
+                + "\"inner_map\":{\"repeated_element\":[{\"repeated_one\":null},[{\"media_type\":true}]]}}";
+
+        assertEquals("{\"firstName\": \"last_name\", \"salary\":1.000e10,"
+                + "\"innerMap\":{\"repeatedElement\":[{\"repeatedOne\":null},[{\"mediaType\":true}]]}}", applyValue(json));
+    }
+
+    @Test
+    public void bytesBlacklistKeepsSeparators() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "uppercase");
+        props.put("blacklist", "first_name,living");
+        xformValue.configure(props);
+
+        assertEquals("{  \"ADDRESS_NUMBER\" : 123, \"INNER\": [1, {\"LIVE\": 2}] }",
+                applyValue("{ \"first_name\" : \"x,}\", \"address_number\" : 123, \"living\": false,"
+                        + " \"inner\": [1, {\"live\": 2}] }"));
+        assertEquals("{}", applyValue("{\"first_name\":1}"));
+    }
+
+    @Test
+    public void bytesEscapedKeys() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "uppercase");
+        xformValue.configure(props);
+
+        assertEquals("{\"QUOTE\\\"D\":\"\\u00e9\",\"ÉTÉ\":1}", applyValue("{\"quote\\\"d\":\"\\u00e9\",\"\\u00e9t\\u00e9\":1}"));
+    }
+
+    @Test
+    public void bytesUnchangedReturnsSameRecord() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "lowercase");
+        xformValue.configure(props);
+
+        final SinkRecord record = new SinkRecord("test", 0, null, null, null,
+                "[{\"name\": 1}, \"text\", 2]".getBytes(StandardCharsets.UTF_8), 0);
+        assertSame(record, xformValue.apply(record));
+    }
+
+    @Test
+    public void stringKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "camel2snakehyphen");
+        xformKey.configure(props);
+
+        final SinkRecord record = new SinkRecord("test", 0, Schema.STRING_SCHEMA, "{\"orderId\":\"abcDef\"}", null, null, 0);
+        final SinkRecord transformedRecord = xformKey.apply(record);
+
+        assertEquals("{\"order-id\":\"abcDef\"}", transformedRecord.key());
+        assertEquals(Schema.STRING_SCHEMA, transformedRecord.keySchema());
+    }
+
+    @Test
+    public void plainTextStringPassesThrough() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "camel2snakehyphen");
+        xformValue.configure(props);
+
+        final SinkRecord record = new SinkRecord("test", 0, null, null, Schema.STRING_SCHEMA, "orderId shipped", 0);
+        assertSame(record, xformValue.apply(record));
+
+        final SinkRecord indented = new SinkRecord("test", 0, null, null, Schema.STRING_SCHEMA, "\n  [{\"orderId\":1}]", 0);
+        assertEquals("\n  [{\"order-id\":1}]", xformValue.apply(indented).value());
+    }
+
+    @Test
+    public void bytesScalarPassesThrough() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "camel2snakehyphen");
+        xformValue.configure(props);
+
+        for (String payload : new String[]{"42", "\"orderId\"", "orderId shipped", ""}) {
+            final SinkRecord record = new SinkRecord("test", 0, null, null, Schema.BYTES_SCHEMA,
+                    payload.getBytes(StandardCharsets.UTF_8), 0);
+            assertSame(record, xformValue.apply(record));
+        }
+        final SinkRecord indented = new SinkRecord("test", 0, null, null, Schema.BYTES_SCHEMA,
+                "\r\n {\"orderId\":1}".getBytes(StandardCharsets.UTF_8), 0);
+        assertEquals("\r\n {\"order-id\":1}", new String((byte[]) xformValue.apply(indented).value(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void metricsOverJmx() throws Exception {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("blacklist", "password");
+        props.put("metrics.enabled", "true");
+        props.put("metrics.name", "jsonToCamel");
+        xformValue.configure(props);
+
+        assertEquals("{\"firstName\":\"x\",\"innerMap\":{\"lastName\":1}}",
+                applyValue("{\"first_name\":\"x\",\"password\":\"y\",\"inner_map\":{\"last_name\":1}}"));
+        xformValue.apply(new SinkRecord("test", 0, null, null, Schema.STRING_SCHEMA, "{\"first_name\":\"x\"}", 0));
+        xformValue.apply(new SinkRecord("test", 0, null, null, Schema.STRING_SCHEMA, "plain text", 0));
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("kafka.connect.transforms:type=convert-case-metrics,transform=jsonToCamel,topic=test");
+        assertEquals(2.0, server.getAttribute(name, "record-total"));
+        assertEquals(4.0, server.getAttribute(name, "fields-converted-total"));
+        assertEquals(1.0, server.getAttribute(name, "fields-dropped-total"));
+        assertEquals(1.0, server.getAttribute(name, "passthrough-total"));
+    }
+
+    @Test
+    public void traceMapping() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("blacklist", "password");
+        xformValue.configure(props);
+
+        final Map<String, String> mapping = new LinkedHashMap<>();
+        new JsonKeyRewriter(xformValue.fieldNaming(), ("{\"first_name\":1,\"password\":\"x\","
+                + "\"line_items\":[{\"item_id\":1},{\"item_id\":2}]}").getBytes(StandardCharsets.UTF_8), mapping).rewrite();
+
+        final Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("first_name", "firstName");
+        expected.put("password", ConversionTracer.DROPPED);
+        expected.put("line_items", "lineItems");
+        expected.put("line_items[].item_id", "lineItems[].itemId");
+        assertEquals(expected, mapping);
+    }
+
+    @Test
+    public void collidingKeysRejected() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "uppercase");
+        xformValue.configure(props);
+
+        assertEquals("{\"NAME\":1,\"INNER\":{\"NAME\":2},\"LIST\":[{\"NAME\":3}]}",
+                applyValue("{\"name\":1,\"inner\":{\"NAME\":2},\"list\":[{\"name\":3}]}"));
+        try {
+            applyValue("{\"inner\":{\"name\":1,\"NAME\":2}}");
+            fail("Expected DataException");
+        } catch (DataException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Keys \"name\" and \"NAME\" both convert to \"NAME\""));
+        }
+    }
+
+    @Test
+    public void mapFallsBackToConvertCase() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "uppercase");
+        xformValue.configure(props);
+
+        final Map<String, Object> value = new HashMap<>();
+        value.put("first_name", "whatever");
+
+        final SinkRecord transformedRecord = xformValue.apply(new SinkRecord("test", 0, null, null, null, value, 0));
+        assertEquals("whatever", ((Map) transformedRecord.value()).get("FIRST_NAME"));
+    }
+
+    @Test (expected = DataException.class)
+    public void bytesMalformed() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "uppercase");
+        xformValue.configure(props);
+
+        applyValue("{\"first_name\": \"whatever\"");
+    }
+}
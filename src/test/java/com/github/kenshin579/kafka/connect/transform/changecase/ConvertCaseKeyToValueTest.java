@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ConvertCaseKeyToValueTest {
+
+    private ConvertCaseKeyToValue<SinkRecord> xformFused = new ConvertCaseKeyToValue<>();
+    private KeyToValue<SinkRecord> xformKeyToValue = new KeyToValue<>();
+    private ConvertCase<SinkRecord> xformValue = new ConvertCase.Value<>();
+
+    private final Schema innerSchema = SchemaBuilder.struct().field("media_type", Schema.STRING_SCHEMA).build();
+
+    private final Schema schema = SchemaBuilder.struct().name("Person")
+            .field("first_name", Schema.STRING_SCHEMA)
+            .field("address_number", Schema.OPTIONAL_INT32_SCHEMA)
+            .field("inner_most", innerSchema)
+            .build();
+
+    private final Schema keySchema = SchemaBuilder.struct().name("PersonKey")
+            .field("order_id", Schema.INT64_SCHEMA)
+            .field("tenant_name", Schema.STRING_SCHEMA)
+            .build();
+
+    @After
+    public void teardown() {
+        xformFused.close();
+        xformKeyToValue.close();
+        xformValue.close();
+    }
+
+    private void configure(Map<String, String> props) {
+        xformFused.configure(props);
+        xformKeyToValue.configure(props);
+        xformValue.configure(props);
+    }
+
+    /*
+        The fused transform must produce exactly what the chain produces
+     */
+    private SinkRecord assertSameAsChain(SinkRecord record) {
+        final SinkRecord expected = xformValue.apply(xformKeyToValue.apply(record));
+        final SinkRecord transformedRecord = xformFused.apply(record);
+        assertEquals(expected.valueSchema(), transformedRecord.valueSchema());
+        assertEquals(expected.value(), transformedRecord.value());
+        assertSame(record.key(), transformedRecord.key());
+        return transformedRecord;
+    }
+
+    private Struct value() {
+        return new Struct(schema)
+                .put("first_name", "whatever")
+                .put("address_number", 123)
+                .put("inner_most", new Struct(innerSchema).put("media_type", "TestMediaType"));
+    }
+
+    private Struct key() {
+        return new Struct(keySchema).put("order_id", 1001L).put("tenant_name", "acme");
+    }
+
+    @Test
+    public void stringKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("key.field.name", "record_key");
+
+        configure(props);
+
+        final SinkRecord transformedRecord = assertSameAsChain(new SinkRecord("test", 0, Schema.INT64_SCHEMA, 42L, schema, value(), 0));
+        assertEquals("42", ((Struct) transformedRecord.value()).getString("recordKey"));
+        assertEquals("TestMediaType", ((Struct) transformedRecord.value()).getStruct("innerMost").getString("mediaType"));
+
+        assertSameAsChain(new SinkRecord("test", 0, null, null, schema, value().put("address_number", null), 0));
+    }
+
+    @Test
+    public void typedKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("key.field.name", "record_key");
+        props.put("key.embed", "typed");
+
+        configure(props);
+
+        final SinkRecord transformedRecord = assertSameAsChain(new SinkRecord("test", 0, keySchema, key(), schema, value(), 0));
+        assertEquals("acme", ((Struct) transformedRecord.value()).getStruct("recordKey").getString("tenantName"));
+    }
+
+    @Test
+    public void flattenedKeyWithBlacklist() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("key.field.name", "key");
+        props.put("key.embed", "flatten");
+        props.put("key.flatten.delimiter", "_");
+        props.put("blacklist", "key_order_id");
+
+        configure(props);
+
+        final SinkRecord transformedRecord = assertSameAsChain(new SinkRecord("test", 0, keySchema, key(), schema, value(), 0));
+        assertNull(transformedRecord.valueSchema().field("keyOrderId"));
+        assertEquals("acme", ((Struct) transformedRecord.value()).getString("keyTenantName"));
+    }
+
+    @Test
+    public void schemaless() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("key.field.name", "record_key");
+        props.put("key.embed", "typed");
+
+        configure(props);
+
+        final Map<String, Object> value = new HashMap<>();
+        value.put("first_name", "whatever");
+        value.put("record_key", "replaced");
+        value.put("inner_most", Collections.singletonMap("media_type", "TestMediaType"));
+        final Map<String, Object> key = new HashMap<>();
+        key.put("order_id", 1001L);
+        key.put("tenant_name", "acme");
+
+        final SinkRecord transformedRecord = assertSameAsChain(new SinkRecord("test", 0, null, key, null, value, 0));
+        assertEquals("acme", ((Map<?, ?>) ((Map<?, ?>) transformedRecord.value()).get("recordKey")).get("tenantName"));
+        assertEquals(3, value.size());
+    }
+
+    @Test
+    public void schemaReused() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("key.field.name", "record_key");
+
+        configure(props);
+
+        final Schema updatedSchema = xformFused.apply(new SinkRecord("test", 0, null, "key", schema, value(), 0)).valueSchema();
+        assertSame(updatedSchema, xformFused.apply(new SinkRecord("test", 0, null, "other", schema, value(), 0)).valueSchema());
+        assertEquals(1, xformFused.schemaUpdateCacheSize());
+    }
+}
@@ -18,15 +18,28 @@ package com.github.kenshin579.kafka.connect.transform.changecase;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.record.TimestampType;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.header.Headers;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.TestName;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -2058,4 +2071,746 @@ public class ConvertCaseTest {
         assertEquals(1, updatedValue.size());
         assertEquals("whatever", updatedValue.get("FIRST_NAME"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void schemalessDeeplyNestedSnakeUnderscore2Camel() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+
+        xformValue.configure(props);
+
+        final Map<String, Object> value = new HashMap<>();
+        Map<String, Object> inner = value;
+        for (int i = 0; i < 5000; i++) {
+            final Map<String, Object> next = new HashMap<>();
+            inner.put("inner_map", next);
+            inner = next;
+        }
+        inner.put("media_type", "TestMediaType");
+
+        final SinkRecord record = new SinkRecord("test", 0, null, null, null, value, 0);
+        final SinkRecord transformedRecord = xformValue.apply(record);
+
+        Map updatedValue = (Map) transformedRecord.value();
+        for (int i = 0; i < 5000; i++) {
+            updatedValue = (Map) updatedValue.get("innerMap");
+        }
+        assertEquals("TestMediaType", updatedValue.get("mediaType"));
+    }
+
+    @Test
+    public void schemaDeeplyNestedSnakeUnderscore2Camel() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+
+        xformValue.configure(props);
+
+        final Schema[] schemas = new Schema[501];
+        schemas[0] = SchemaBuilder.struct().field("media_type", Schema.STRING_SCHEMA).build();
+        for (int i = 1; i < schemas.length; i++) {
+            schemas[i] = SchemaBuilder.struct().field("inner_struct", schemas[i - 1]).build();
+        }
+
+        Struct value = new Struct(schemas[0]).put("media_type", "TestMediaType");
+        for (int i = 1; i < schemas.length; i++) {
+            value = new Struct(schemas[i]).put("inner_struct", value);
+        }
+
+        final SinkRecord record = new SinkRecord("test", 0, null, null, schemas[schemas.length - 1], value, 0);
+        final SinkRecord transformedRecord = xformValue.apply(record);
+
+        Struct updatedValue = (Struct) transformedRecord.value();
+        for (int i = 1; i < schemas.length; i++) {
+            updatedValue = updatedValue.getStruct("innerStruct");
+        }
+        assertEquals("TestMediaType", updatedValue.getString("mediaType"));
+    }
+
+    @Test
+    public void listOfListsSnakeUnderscore2Camel() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+
+        xformValue.configure(props);
+
+        final Map<String, Object> element = new HashMap<>();
+        element.put("repeated_one", "repeatedInner1");
+        final Map<String, Object> value = new HashMap<>();
+        value.put("repeated_element", Collections.singletonList(Collections.singletonList(element)));
+
+        SinkRecord transformedRecord = xformValue.apply(new SinkRecord("test", 0, null, null, null, value, 0));
+
+        List outer = (List) ((Map) transformedRecord.value()).get("repeatedElement");
+        assertEquals("repeatedInner1", ((Map) ((List) outer.get(0)).get(0)).get("repeatedOne"));
+
+        final Schema elementSchema = SchemaBuilder.struct().field("repeated_one", Schema.STRING_SCHEMA).build();
+        final Schema schema = SchemaBuilder.struct()
+                .field("repeated_element", SchemaBuilder.array(SchemaBuilder.array(elementSchema).build()).build())
+                .field("str_list", SchemaBuilder.array(Schema.STRING_SCHEMA).build())
+                .build();
+        final Struct struct = new Struct(schema)
+                .put("repeated_element", Collections.singletonList(Collections.singletonList(
+                        new Struct(elementSchema).put("repeated_one", "repeatedInner1"))))
+                .put("str_list", Arrays.asList("data-1", "data-2"));
+
+        transformedRecord = xformValue.apply(new SinkRecord("test", 0, null, null, schema, struct, 0));
+
+        final Struct updatedValue = (Struct) transformedRecord.value();
+        outer = updatedValue.getArray("repeatedElement");
+        assertEquals("repeatedInner1", ((Struct) ((List) outer.get(0)).get(0)).getString("repeatedOne"));
+        assertEquals(Arrays.asList("data-1", "data-2"), updatedValue.getArray("strList"));
+    }
+
+    @Test
+    public void applyAllSameAsApply() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("blacklist", "living");
+
+        xformValue.configure(props);
+
+        final Schema first = SchemaBuilder.struct()
+                .field("first_name", Schema.STRING_SCHEMA)
+                .field("living", Schema.BOOLEAN_SCHEMA)
+                .build();
+        final Schema second = SchemaBuilder.struct()
+                .field("address_number", Schema.INT32_SCHEMA)
+                .build();
+        final Map<String, Object> schemaless = new HashMap<>();
+        schemaless.put("media_type", "TestMediaType");
+
+        final List<SinkRecord> records = Arrays.asList(
+                new SinkRecord("test", 0, null, null, first, new Struct(first).put("first_name", "a").put("living", true), 0),
+                new SinkRecord("test", 0, null, null, first, new Struct(first).put("first_name", "b").put("living", false), 1),
+                new SinkRecord("test", 0, null, null, second, new Struct(second).put("address_number", 123), 2),
+                new SinkRecord("test", 0, null, null, null, schemaless, 3),
+                new SinkRecord("test", 0, null, null, first, null, 4),
+                new SinkRecord("test", 0, null, null, first, new Struct(first).put("first_name", "c").put("living", true), 5));
+
+        final List<SinkRecord> transformedRecords = xformValue.applyAll(records);
+
+        assertEquals(records.size(), transformedRecords.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(xformValue.apply(records.get(i)), transformedRecords.get(i));
+        }
+        assertEquals("c", ((Struct) transformedRecords.get(5).value()).getString("firstName"));
+        assertEquals(2L, xformValue.schemaUpdateCacheSize());
+    }
+
+    @Test
+    public void parallelArraysSameAsSequential() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        xformValue.configure(props);
+
+        final ConvertCase<SinkRecord> xformParallel = new ConvertCase.Value<>();
+        props.put("parallel.array.threshold", "10");
+        props.put("parallel.threads", "4");
+        xformParallel.configure(props);
+
+        final Schema lineItem = SchemaBuilder.struct()
+                .field("unit_price", Schema.OPTIONAL_INT32_SCHEMA)
+                .field("sub_items", SchemaBuilder.array(SchemaBuilder.struct().field("item_id", Schema.INT32_SCHEMA).build()).optional().build())
+                .build();
+        final Schema schema = SchemaBuilder.struct()
+                .field("line_items", SchemaBuilder.array(lineItem).build())
+                .build();
+
+        final List<Struct> lineItems = new ArrayList<>();
+        final List<Object> schemalessItems = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            final List<Struct> subItems = new ArrayList<>();
+            final List<Object> schemalessSubItems = new ArrayList<>();
+            for (int j = 0; j < i % 30; j++) {
+                subItems.add(new Struct(lineItem.field("sub_items").schema().valueSchema()).put("item_id", j));
+                schemalessSubItems.add(Collections.singletonMap("item_id", j));
+            }
+            // items without price nor sub items convert to null and are dropped
+            lineItems.add(new Struct(lineItem).put("unit_price", i % 7 == 0 ? null : i).put("sub_items", i % 7 == 0 ? null : subItems));
+            schemalessItems.add(i % 11 == 0 ? "text" : Collections.singletonMap("sub_items", schemalessSubItems));
+        }
+
+        final SinkRecord record = new SinkRecord("test", 0, null, null, schema, new Struct(schema).put("line_items", lineItems), 0);
+        final SinkRecord parallelRecord = xformParallel.apply(record);
+        assertEquals(xformValue.apply(record), parallelRecord);
+        assertEquals(5000 - 5000 / 7 - 1, ((Struct) parallelRecord.value()).getArray("lineItems").size());
+
+        final SinkRecord schemalessRecord = new SinkRecord("test", 0, null, null, null,
+                Collections.singletonMap("line_items", schemalessItems), 0);
+        assertEquals(xformValue.apply(schemalessRecord), xformParallel.apply(schemalessRecord));
+
+        xformParallel.close();
+    }
+
+    @Test
+    public void sharedSchemaCache() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("schema.cache.shared", "true");
+
+        xformValue.configure(props);
+        final ConvertCase<SinkRecord> xformOther = new ConvertCase.Value<>();
+        xformOther.configure(props);
+        assertEquals(1, SharedPlanRegistry.size());
+
+        final Schema schema = SchemaBuilder.struct().field("first_name", Schema.STRING_SCHEMA).build();
+        final SinkRecord record = new SinkRecord("test", 0, null, null, schema, new Struct(schema).put("first_name", "whatever"), 0);
+
+        xformValue.apply(record);
+        assertEquals(1L, xformOther.schemaUpdateCacheSize());
+        assertSame(xformValue.apply(record).valueSchema(), xformOther.apply(record).valueSchema());
+
+        props.put("schema.cache.size", "64");
+        final ConvertCase<SinkRecord> xformLarger = new ConvertCase.Value<>();
+        xformLarger.configure(props);
+        assertEquals(2, SharedPlanRegistry.size());
+        assertEquals(0L, xformLarger.schemaUpdateCacheSize());
+        xformLarger.close();
+
+        xformOther.close();
+        assertEquals(1, SharedPlanRegistry.size());
+        xformValue.close();
+        assertEquals(0, SharedPlanRegistry.size());
+    }
+
+    @Test
+    public void parallelPoolShared() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("parallel.array.threshold", "10");
+        props.put("parallel.threads", "3");
+
+        xformValue.configure(props);
+        final ConvertCase<SinkRecord> xformOther = new ConvertCase.Value<>();
+        xformOther.configure(props);
+        assertEquals(1, ParallelListConverter.pools());
+
+        xformValue.configure(props);
+        assertEquals(1, ParallelListConverter.pools());
+
+        xformOther.close();
+        assertEquals(1, ParallelListConverter.pools());
+        xformValue.close();
+        assertEquals(0, ParallelListConverter.pools());
+    }
+
+    @Test
+    public void metricsOverJmx() throws Exception {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("blacklist", "password");
+        props.put("metrics.enabled", "true");
+        props.put("metrics.name", "toCamel");
+
+        xformValue.configure(props);
+
+        final Schema schema = SchemaBuilder.struct()
+                .field("first_name", Schema.STRING_SCHEMA)
+                .field("password", Schema.STRING_SCHEMA)
+                .build();
+        final SinkRecord record = new SinkRecord("test", 0, null, null, schema,
+                new Struct(schema).put("first_name", "whatever").put("password", "secret"), 0);
+        xformValue.apply(record);
+        xformValue.apply(record);
+        xformValue.apply(new SinkRecord("test", 0, null, null, null, null, 0));
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("kafka.connect.transforms:type=convert-case-metrics,transform=toCamel,topic=test");
+        assertEquals(2.0, server.getAttribute(name, "record-total"));
+        assertEquals(1.0, server.getAttribute(name, "schema-cache-miss-total"));
+        assertEquals(1.0, server.getAttribute(name, "schema-cache-hit-total"));
+        assertEquals(2.0, server.getAttribute(name, "fields-converted-total"));
+        assertEquals(2.0, server.getAttribute(name, "fields-dropped-total"));
+        assertEquals(1.0, server.getAttribute(name, "passthrough-total"));
+
+        xformValue.close();
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void metricsLatencyTail() throws Exception {
+        final TransformMetrics metrics = TransformMetrics.register("convert-case-metrics", "latencyTail");
+        final TransformMetrics.TopicMetrics topicMetrics = metrics.topic("test");
+        for (int i = 0; i < 99; i++) {
+            topicMetrics.recordSchema(2_000L, 1, 0);
+        }
+        topicMetrics.recordSchema(50_000_000L, 1, 0);
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("kafka.connect.transforms:type=convert-case-metrics,transform=latencyTail,topic=test");
+        assertEquals(50_000.0, (Double) server.getAttribute(name, "schema-latency-max"), 0.0);
+        assertTrue((Double) server.getAttribute(name, "schema-latency-p999") > 40_000.0);
+        assertTrue((Double) server.getAttribute(name, "schema-latency-p50") < 5.0);
+
+        metrics.close();
+    }
+
+    @Test
+    public void traceMapping() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("blacklist", "password");
+        props.put("trace.topics", "test");
+
+        xformValue.configure(props);
+
+        final ConversionTracer tracer = ConversionTracer.create(xformValue.fieldNameConverter(), 0,
+                Collections.singletonList("test"), Collections.emptyList());
+        assertTrue(tracer.sampled("test", null));
+        assertFalse(tracer.sampled("other", null));
+        assertNull(ConversionTracer.create(xformValue.fieldNameConverter(), 0, Collections.emptyList(), Collections.emptyList()));
+
+        final Schema item = SchemaBuilder.struct().field("item_id", Schema.INT32_SCHEMA).build();
+        final Schema schema = SchemaBuilder.struct()
+                .field("first_name", Schema.STRING_SCHEMA)
+                .field("password", Schema.STRING_SCHEMA)
+                .field("line_items", SchemaBuilder.array(item).build())
+                .build();
+        final Map<String, String> expected = new HashMap<>();
+        expected.put("first_name", "firstName");
+        expected.put("password", ConversionTracer.DROPPED);
+        expected.put("line_items", "lineItems");
+        expected.put("line_items[].item_id", "lineItems[].itemId");
+        assertEquals(expected, tracer.mapping(schema));
+
+        final Map<String, Object> value = new HashMap<>();
+        value.put("first_name", "whatever");
+        value.put("password", "secret");
+        value.put("line_items", Arrays.asList(Collections.singletonMap("item_id", 1), Collections.singletonMap("item_id", 2)));
+        assertEquals(expected, tracer.mapping((Object) value));
+
+        final SinkRecord record = new SinkRecord("test", 0, null, null, schema, new Struct(schema)
+                .put("first_name", "whatever")
+                .put("password", "secret")
+                .put("line_items", Collections.singletonList(new Struct(item).put("item_id", 1))), 0);
+        assertEquals("whatever", ((Struct) xformValue.apply(record).value()).get("firstName"));
+    }
+
+    @Test
+    public void profilerOverJmx() throws Exception {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("metrics.name", "profiled");
+        props.put("profile.sample.rate", "1");
+        props.put("profile.top.n", "1");
+
+        xformValue.configure(props);
+
+        final Schema item = SchemaBuilder.struct().field("item_id", Schema.INT32_SCHEMA).build();
+        final Schema order = SchemaBuilder.struct().name("Order")
+                .field("order_id", Schema.INT32_SCHEMA)
+                .field("line_items", SchemaBuilder.array(item).build())
+                .build();
+        final Schema customer = SchemaBuilder.struct().name("Customer").field("first_name", Schema.STRING_SCHEMA).build();
+        final List<Struct> lineItems = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lineItems.add(new Struct(item).put("item_id", i));
+        }
+        for (int i = 0; i < 20; i++) {
+            xformValue.apply(new SinkRecord("orders", 0, null, null, order, new Struct(order).put("order_id", i).put("line_items", lineItems), 0));
+            xformValue.apply(new SinkRecord("customers", 0, null, null, customer, new Struct(customer).put("first_name", "whatever"), 0));
+        }
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("kafka.connect.transforms:type=convert-case-profiler,transform=profiled");
+        assertEquals(40L, server.getAttribute(name, "SampledRecords"));
+        final String[] topSchemas = (String[]) server.getAttribute(name, "TopSchemas");
+        assertEquals(1, topSchemas.length);
+        assertTrue(topSchemas[0], topSchemas[0].startsWith("Order samples=20 "));
+        assertTrue(((String[]) server.getAttribute(name, "TopFields"))[0].startsWith("Order.line_items samples=20 "));
+
+        xformValue.close();
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void profilerFieldPaths() throws Exception {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("metrics.name", "profiledPaths");
+        props.put("profile.sample.rate", "1");
+        props.put("profile.top.n", "10");
+
+        xformValue.configure(props);
+
+        final Schema address = SchemaBuilder.struct().field("zip_code", Schema.STRING_SCHEMA).build();
+        final Schema item = SchemaBuilder.struct().field("ship_to", address).build();
+        final Schema order = SchemaBuilder.struct().name("Order")
+                .field("order_id", Schema.INT32_SCHEMA)
+                .field("line_items", SchemaBuilder.array(item).build())
+                .build();
+        final Struct value = new Struct(order).put("order_id", 1).put("line_items",
+                Collections.singletonList(new Struct(item).put("ship_to", new Struct(address).put("zip_code", "12345"))));
+        final Map<String, Object> homeAddress = new HashMap<>();
+        homeAddress.put("zip_code", "12345");
+        final Map<String, Object> customer = new HashMap<>();
+        customer.put("home_address", homeAddress);
+        final Map<String, Object> schemalessValue = new HashMap<>();
+        schemalessValue.put("customer", customer);
+        schemalessValue.put("order_id", 1);
+        for (int i = 0; i < 5; i++) {
+            xformValue.apply(new SinkRecord("orders", 0, null, null, order, value, 0));
+            xformValue.apply(new SinkRecord("customers", 0, null, null, null, schemalessValue, 0));
+        }
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("kafka.connect.transforms:type=convert-case-profiler,transform=profiledPaths");
+        final Set<String> paths = new HashSet<>();
+        for (String row : (String[]) server.getAttribute(name, "TopFields")) {
+            assertTrue(row, row.contains(" samples=5 "));
+            paths.add(row.substring(0, row.indexOf(' ')));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("Order.line_items", "Order.line_items[].ship_to",
+                "customers/<schemaless>.customer", "customers/<schemaless>.customer.home_address")), paths);
+    }
+
+    @Test
+    public void keyAndValue() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+
+        final ConvertCase<SinkRecord> xformKeyAndValue = new ConvertCase.KeyAndValue<>();
+        xformKeyAndValue.configure(props);
+        xformKey.configure(props);
+        xformValue.configure(props);
+
+        final Schema keySchema = SchemaBuilder.struct().field("order_id", Schema.INT64_SCHEMA).build();
+        final Schema schema = SchemaBuilder.struct().field("first_name", Schema.STRING_SCHEMA).build();
+        final SinkRecord record = new SinkRecord("test", 0, keySchema, new Struct(keySchema).put("order_id", 1001L),
+                schema, new Struct(schema).put("first_name", "whatever"), 0);
+
+        final SinkRecord transformedRecord = xformKeyAndValue.apply(record);
+        assertEquals(xformValue.apply(xformKey.apply(record)), transformedRecord);
+        assertEquals(1001L, ((Struct) transformedRecord.key()).get("orderId"));
+        assertEquals("whatever", ((Struct) transformedRecord.value()).get("firstName"));
+        assertEquals(2L, xformKeyAndValue.schemaUpdateCacheSize());
+
+        final Map<String, Object> value = new HashMap<>();
+        value.put("first_name", "whatever");
+        final SinkRecord schemalessRecord = xformKeyAndValue.apply(new SinkRecord("test", 0, null, "order_id", null, value, 0));
+        assertEquals("order_id", schemalessRecord.key());
+        assertEquals("whatever", ((Map<?, ?>) schemalessRecord.value()).get("firstName"));
+
+        final SinkRecord tombstone = new SinkRecord("test", 0, null, "order_id", null, null, 0);
+        assertSame(tombstone, xformKeyAndValue.apply(tombstone));
+        xformKeyAndValue.close();
+    }
+
+    @Test
+    public void keyAndValueNullTopic() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+
+        final ConvertCase<SinkRecord> xformKeyAndValue = new ConvertCase.KeyAndValue<>();
+        xformKeyAndValue.configure(props);
+
+        final Map<String, Object> value = new HashMap<>();
+        value.put("first_name", "whatever");
+        final SinkRecord transformedRecord = xformKeyAndValue.apply(new SinkRecord(null, 0, null, "order_id", null, value, 0));
+        assertNull(transformedRecord.topic());
+        assertEquals("whatever", ((Map<?, ?>) transformedRecord.value()).get("firstName"));
+
+        final SinkRecord tombstone = new SinkRecord(null, 0, null, "order_id", null, null, 0);
+        assertSame(tombstone, xformKeyAndValue.apply(tombstone));
+        xformKeyAndValue.close();
+    }
+
+    @Test
+    public void keyAndValueMetrics() throws Exception {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("metrics.enabled", "true");
+        props.put("metrics.name", "keyAndValue");
+
+        final ConvertCase<SinkRecord> xformKeyAndValue = new ConvertCase.KeyAndValue<>();
+        xformKeyAndValue.configure(props);
+
+        final Schema keySchema = SchemaBuilder.struct().field("order_id", Schema.INT64_SCHEMA).build();
+        final Schema schema = SchemaBuilder.struct().field("first_name", Schema.STRING_SCHEMA).field("last_name", Schema.STRING_SCHEMA).build();
+        xformKeyAndValue.apply(new SinkRecord("test", 0, keySchema, new Struct(keySchema).put("order_id", 1001L),
+                schema, new Struct(schema).put("first_name", "whatever").put("last_name", "whoever"), 0));
+        xformKeyAndValue.apply(new SinkRecord("test", 0, null, "order_id", null, null, 0));
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("kafka.connect.transforms:type=convert-case-metrics,transform=keyAndValue,topic=test");
+        assertEquals(1.0, server.getAttribute(name, "record-total"));
+        assertEquals(3.0, server.getAttribute(name, "fields-converted-total"));
+        assertEquals(1.0, server.getAttribute(name, "passthrough-total"));
+        xformKeyAndValue.close();
+    }
+
+    @Test
+    public void nameCache() {
+        final FieldNameConverter converter = new FieldNameConverter(ConvertCase.CaseType.UPPERCASE, "", "first_name", "");
+        final FieldNameCache cache = new FieldNameCache(converter, 2);
+
+        assertNull(cache.convertField("first_name", false));
+        assertNull(cache.convertField("first_name", false));
+        assertEquals("FIRST_NAME", cache.convertField("first_name", true));
+        assertEquals("LIVING", cache.convertField("living", false));
+        assertEquals(3L, cache.size());
+    }
+
+    @Test
+    public void nameCacheAdmission() {
+        final TinyLfuCache<String, String> cache = new TinyLfuCache<>(4);
+        final List<String> hotNames = Arrays.asList("first_name", "last_name", "address", "phone");
+        // Every record repeats the field names next to a few keys that are data
+        for (int record = 0; record < 1000; record++) {
+            for (String name : hotNames) {
+                if (cache.get(name) == null) {
+                    cache.put(name, name.toUpperCase());
+                }
+            }
+            for (int i = 0; i < 3; i++) {
+                final String dataKey = "user-" + record + "-" + i;
+                if (cache.get(dataKey) == null) {
+                    cache.put(dataKey, dataKey);
+                }
+            }
+        }
+        for (String name : hotNames) {
+            assertEquals(name.toUpperCase(), cache.get(name));
+        }
+        assertEquals(4L, cache.size());
+    }
+
+    private Map<String, Object> dataKeyedValue() {
+        final Map<String, Object> scores = new HashMap<>();
+        scores.put("1001", 5);
+        scores.put("1002", 7);
+        scores.put("20240101", 9);
+        final Map<String, Object> value = new HashMap<>();
+        value.put("firstName", "whatever");
+        value.put("userScores", scores);
+        return value;
+    }
+
+    @Test
+    public void dataKeysKeep() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "uppercase");
+        props.put("data.keys", "keep");
+
+        xformValue.configure(props);
+
+        final Map<?, ?> updatedValue = (Map<?, ?>) xformValue.apply(new SinkRecord("test", 0, null, null, null, dataKeyedValue(), 0)).value();
+        assertEquals("whatever", updatedValue.get("FIRSTNAME"));
+        assertEquals(7, ((Map<?, ?>) updatedValue.get("USERSCORES")).get("1002"));
+        assertEquals(2L, ((FieldNameCache) xformValue.fieldNaming()).size());
+    }
+
+    @Test
+    public void dataKeysUncached() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "uppercase");
+        props.put("data.keys", "uncached");
+
+        xformValue.configure(props);
+
+        final Map<String, Object> value = dataKeyedValue();
+        ((Map<String, Object>) value.get("userScores")).put("sku-4711-x", 1);
+        final Map<?, ?> updatedValue = (Map<?, ?>) xformValue.apply(new SinkRecord("test", 0, null, null, null, value, 0)).value();
+        assertEquals(1, ((Map<?, ?>) updatedValue.get("USERSCORES")).get("SKU-4711-X"));
+        assertEquals(2L, ((FieldNameCache) xformValue.fieldNaming()).size());
+    }
+
+    @Test
+    public void headers() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "camel2snakeunderscore");
+        props.put("headers.convert", "true");
+        props.put("blacklist", "internalOnly");
+
+        xformValue.configure(props);
+
+        final Headers headers = new ConnectHeaders()
+                .addString("traceId", "abc")
+                .addInt("retry", 2)
+                .addString("internalOnly", "x");
+        final Schema schema = SchemaBuilder.struct().field("firstName", Schema.STRING_SCHEMA).build();
+        final SinkRecord record = new SinkRecord("test", 0, null, null, schema, new Struct(schema).put("firstName", "whatever"),
+                0, 0L, TimestampType.NO_TIMESTAMP_TYPE, headers);
+
+        final SinkRecord transformedRecord = xformValue.apply(record);
+        final List<String> keys = new ArrayList<>();
+        for (Header header : transformedRecord.headers()) {
+            keys.add(header.key());
+        }
+        assertEquals(Arrays.asList("trace_id", "retry"), keys);
+        assertEquals("abc", transformedRecord.headers().lastWithName("trace_id").value());
+        assertEquals("whatever", ((Struct) transformedRecord.value()).get("first_name"));
+        assertEquals(3, record.headers().size());
+
+        final SinkRecord tombstone = new SinkRecord("test", 0, null, null, null, null, 0, 0L, TimestampType.NO_TIMESTAMP_TYPE, headers);
+        assertEquals("trace_id", xformValue.apply(tombstone).headers().iterator().next().key());
+    }
+
+    @Test
+    public void headersUnchanged() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "camel2snakeunderscore");
+        props.put("headers.convert", "true");
+
+        xformValue.configure(props);
+
+        final Headers headers = new ConnectHeaders().addString("retry", "2");
+        final SinkRecord tombstone = new SinkRecord("test", 0, null, null, null, null, 0, 0L, TimestampType.NO_TIMESTAMP_TYPE, headers);
+        assertSame(tombstone, xformValue.apply(tombstone));
+    }
+
+    @Test
+    public void topic() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "camel2snakeunderscore");
+        props.put("topic.convert", "true");
+
+        xformValue.configure(props);
+
+        final Schema schema = SchemaBuilder.struct().field("firstName", Schema.STRING_SCHEMA).build();
+        final SinkRecord record = new SinkRecord("OrderEvents", 0, null, null, schema, new Struct(schema).put("firstName", "whatever"), 0);
+        final SinkRecord transformedRecord = xformValue.apply(record);
+        assertEquals("order_events", transformedRecord.topic());
+        assertEquals("whatever", ((Struct) transformedRecord.value()).get("first_name"));
+        assertSame(transformedRecord.topic(), xformValue.apply(record).topic());
+
+        final SinkRecord tombstone = new SinkRecord("OrderEvents", 0, null, null, null, null, 0);
+        assertEquals("order_events", xformValue.apply(tombstone).topic());
+
+        final SinkRecord converted = new SinkRecord("order_events", 0, null, null, null, null, 0);
+        assertSame(converted, xformValue.apply(converted));
+    }
+
+    @Test
+    public void topicKeptByDefault() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "camel2snakeunderscore");
+
+        xformValue.configure(props);
+
+        final SinkRecord tombstone = new SinkRecord("OrderEvents", 0, null, null, null, null, 0);
+        assertSame(tombstone, xformValue.apply(tombstone));
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String renamesFile(String... lines) throws IOException {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file.getPath();
+    }
+
+    @Test
+    public void renamesFile() throws IOException {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("renames.file", renamesFile("# legacy columns", "cust_nm:customerName", "", "addr_1:street", "straße:street_name", "hidden:visible"));
+        props.put("blacklist", "hidden");
+
+        xformValue.configure(props);
+
+        final Schema innerSchema = SchemaBuilder.struct().field("addr_1", Schema.STRING_SCHEMA).build();
+        final Schema schema = SchemaBuilder.struct()
+                .field("cust_nm", Schema.STRING_SCHEMA)
+                .field("first_name", Schema.STRING_SCHEMA)
+                .field("straße", Schema.STRING_SCHEMA)
+                .field("hidden", Schema.STRING_SCHEMA)
+                .field("inner_most", innerSchema)
+                .build();
+        final Struct value = new Struct(schema)
+                .put("cust_nm", "acme")
+                .put("first_name", "whatever")
+                .put("straße", "Hauptstraße")
+                .put("hidden", "x")
+                .put("inner_most", new Struct(innerSchema).put("addr_1", "Main St"));
+
+        final Struct updatedValue = (Struct) xformValue.apply(new SinkRecord("test", 0, null, null, schema, value, 0)).value();
+        assertEquals(4, updatedValue.schema().fields().size());
+        assertEquals("acme", updatedValue.get("customerName"));
+        assertEquals("whatever", updatedValue.get("firstName"));
+        assertEquals("Hauptstraße", updatedValue.get("street_name"));
+        assertEquals("Main St", updatedValue.getStruct("innerMost").get("street"));
+
+        final Map<String, Object> schemalessValue = new HashMap<>();
+        schemalessValue.put("cust_nm", "acme");
+        schemalessValue.put("first_name", "whatever");
+        final Map<?, ?> updatedMap = (Map<?, ?>) xformValue.apply(new SinkRecord("test", 0, null, null, null, schemalessValue, 0)).value();
+        assertEquals("acme", updatedMap.get("customerName"));
+        assertEquals("whatever", updatedMap.get("firstName"));
+    }
+
+    @Test (expected = ConfigException.class)
+    public void renamesFileMissing() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("renames.file", new File(folder.getRoot(), "missing.txt").getPath());
+
+        xformValue.configure(props);
+    }
+
+    @Test (expected = ConfigException.class)
+    public void renamesFileMalformed() throws IOException {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("renames.file", renamesFile("cust_nm:customerName", "addr_1"));
+
+        xformValue.configure(props);
+    }
+
+    @Test (expected = ConfigException.class)
+    public void renamesFileDuplicate() throws IOException {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("renames.file", renamesFile("cust_nm:customerName", "cust_nm:name"));
+
+        xformValue.configure(props);
+    }
+
+    @Test
+    public void renamesFileTrimmed() throws IOException {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), "  cust_nm : customerName \r\n\t# comment\r\naddr_1:\tstreet\t\r\n   \r\n".getBytes(StandardCharsets.UTF_8));
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("renames.file", file.getPath());
+
+        xformValue.configure(props);
+
+        final Map<String, Object> value = new HashMap<>();
+        value.put("cust_nm", "acme");
+        value.put("addr_1", "Main St");
+        final Map<?, ?> updatedValue = (Map<?, ?>) xformValue.apply(new SinkRecord("test", 0, null, null, null, value, 0)).value();
+        assertEquals(2, updatedValue.size());
+        assertEquals("acme", updatedValue.get("customerName"));
+        assertEquals("Main St", updatedValue.get("street"));
+    }
+
+    @Test (expected = ConfigException.class)
+    public void renamesFileBlankName() throws IOException {
+        final Map<String, String> props = new HashMap<>();
+        props.put("convert.from.to", "snakeunderscore2camel");
+        props.put("renames.file", renamesFile("cust_nm:customerName", "addr_1 :  "));
+
+        xformValue.configure(props);
+    }
+
+    @Test
+    public void renamesFileEdited() throws IOException {
+        final String file = renamesFile("cust_nm:customerName");
+        assertEquals(RenameTable.open(file), RenameTable.open(file));
+        final RenameTable before = RenameTable.open(file);
+
+        Files.write(new File(file).toPath(), Collections.singletonList("cust_nm:name"), StandardCharsets.UTF_8);
+        final RenameTable after = RenameTable.open(file);
+        assertNotEquals(before, after);
+        assertNotEquals(new FieldNameConverter(ConvertCase.CaseType.SNAKEUNDERSCORE2CAMEL, "", "", "", before),
+                new FieldNameConverter(ConvertCase.CaseType.SNAKEUNDERSCORE2CAMEL, "", "", "", after));
+        assertEquals("name", after.get("cust_nm"));
+        assertEquals("customerName", before.get("cust_nm"));
+
+        Files.write(new File(file).toPath(), new byte[0]);
+        assertEquals("customerName", before.get("cust_nm"));
+        assertEquals("name", after.get("cust_nm"));
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class FieldPipelineTest {
+
+    private FieldPipeline<SinkRecord> xformPipeline = new FieldPipeline<>();
+
+    private final Schema innerSchema = SchemaBuilder.struct().field("media_type", Schema.STRING_SCHEMA).build();
+
+    private final Schema schema = SchemaBuilder.struct().name("Person")
+            .field("first_name", Schema.STRING_SCHEMA)
+            .field("address_number", Schema.OPTIONAL_INT32_SCHEMA)
+            .field("internal_id", Schema.INT64_SCHEMA)
+            .field("inner_most", innerSchema)
+            .build();
+
+    private final Schema keySchema = SchemaBuilder.struct().name("PersonKey")
+            .field("order_id", Schema.INT64_SCHEMA)
+            .build();
+
+    @After
+    public void teardown() {
+        xformPipeline.close();
+    }
+
+    private Struct value() {
+        return new Struct(schema)
+                .put("first_name", "whatever")
+                .put("address_number", 123)
+                .put("internal_id", 7L)
+                .put("inner_most", new Struct(innerSchema).put("media_type", "TestMediaType"));
+    }
+
+    private Map<String, String> props() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("pipeline", "drop,key,case,rename,prefix");
+        props.put("pipeline.drop.type", "drop");
+        props.put("pipeline.drop.fields", "internal_id");
+        props.put("pipeline.key.type", "key");
+        props.put("pipeline.key.key.field.name", "record_key");
+        props.put("pipeline.key.key.embed", "typed");
+        props.put("pipeline.case.type", "case");
+        props.put("pipeline.case.convert.from.to", "snakeunderscore2camel");
+        props.put("pipeline.rename.type", "rename");
+        props.put("pipeline.rename.renames", "firstName:name");
+        props.put("pipeline.prefix.type", "prefix");
+        props.put("pipeline.prefix.prefix", "p_");
+        return props;
+    }
+
+    @Test
+    public void pipeline() {
+        xformPipeline.configure(props());
+
+        final Struct key = new Struct(keySchema).put("order_id", 1001L);
+        final SinkRecord transformedRecord = xformPipeline.apply(new SinkRecord("test", 0, keySchema, key, schema, value(), 0));
+
+        final Struct updatedValue = (Struct) transformedRecord.value();
+        assertEquals("Person", transformedRecord.valueSchema().name());
+        assertEquals(Arrays.asList("p_name", "p_addressNumber", "p_innerMost", "p_recordKey"), fieldNames(transformedRecord.valueSchema()));
+        assertEquals("whatever", updatedValue.getString("p_name"));
+        assertEquals(123, updatedValue.getInt32("p_addressNumber").intValue());
+        assertEquals("TestMediaType", updatedValue.getStruct("p_innerMost").getString("mediaType"));
+        assertEquals(1001L, updatedValue.getStruct("p_recordKey").get("orderId"));
+        assertSame(key, transformedRecord.key());
+    }
+
+    @Test
+    public void caseBeforeKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("pipeline", "case,key");
+        props.put("pipeline.case.type", "case");
+        props.put("pipeline.case.convert.from.to", "snakeunderscore2camel");
+        props.put("pipeline.key.type", "key");
+        props.put("pipeline.key.key.field.name", "record_key");
+        props.put("pipeline.key.key.embed", "typed");
+
+        xformPipeline.configure(props);
+
+        final Struct key = new Struct(keySchema).put("order_id", 1001L);
+        final Struct updatedValue = (Struct) xformPipeline.apply(new SinkRecord("test", 0, keySchema, key, schema, value(), 0)).value();
+        assertEquals(Arrays.asList("firstName", "addressNumber", "internalId", "innerMost", "record_key"), fieldNames(updatedValue.schema()));
+        assertEquals(1001L, updatedValue.getStruct("record_key").get("order_id"));
+    }
+
+    @Test
+    public void keyFieldCollision() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("pipeline", "key");
+        props.put("pipeline.key.type", "key");
+        props.put("pipeline.key.key.field.name", "internal_id");
+        props.put("pipeline.key.key.embed", "string");
+
+        xformPipeline.configure(props);
+
+        try {
+            xformPipeline.apply(new SinkRecord("test", 0, null, "k", schema, value(), 0));
+            fail("Expected DataException");
+        } catch (DataException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Key field internal_id of pipeline operation key"));
+        }
+
+        final Map<String, Object> value = new HashMap<>();
+        value.put("internal_id", 7L);
+        try {
+            xformPipeline.apply(new SinkRecord("test", 0, null, "k", null, value, 0));
+            fail("Expected DataException");
+        } catch (DataException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Key field internal_id of pipeline operation key"));
+        }
+    }
+
+    @Test
+    public void schemaless() {
+        xformPipeline.configure(props());
+
+        final Map<String, Object> value = new HashMap<>();
+        value.put("first_name", "whatever");
+        value.put("internal_id", 7L);
+        value.put("inner_most", Collections.singletonMap("media_type", "TestMediaType"));
+        final SinkRecord transformedRecord = xformPipeline.apply(new SinkRecord("test", 0, null,
+                Collections.singletonMap("order_id", 1001L), null, value, 0));
+
+        final Map<?, ?> updatedValue = (Map<?, ?>) transformedRecord.value();
+        assertNull(transformedRecord.valueSchema());
+        assertEquals(3, updatedValue.size());
+        assertEquals("whatever", updatedValue.get("p_name"));
+        assertEquals("TestMediaType", ((Map<?, ?>) updatedValue.get("p_innerMost")).get("mediaType"));
+        assertEquals(1001L, ((Map<?, ?>) updatedValue.get("p_recordKey")).get("orderId"));
+    }
+
+    @Test
+    public void schemaReused() {
+        xformPipeline.configure(props());
+
+        final Struct key = new Struct(keySchema).put("order_id", 1001L);
+        final Schema updatedSchema = xformPipeline.apply(new SinkRecord("test", 0, keySchema, key, schema, value(), 0)).valueSchema();
+        assertSame(updatedSchema, xformPipeline.apply(new SinkRecord("test", 0, keySchema, key, schema, value(), 0)).valueSchema());
+    }
+
+    @Test
+    public void tombstone() {
+        xformPipeline.configure(props());
+
+        final SinkRecord record = new SinkRecord("test", 0, null, null, schema, null, 0);
+        assertSame(record, xformPipeline.apply(record));
+    }
+
+    @Test (expected = DataException.class)
+    public void duplicateFieldName() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("pipeline", "rename");
+        props.put("pipeline.rename.type", "rename");
+        props.put("pipeline.rename.renames", "first_name:internal_id");
+
+        xformPipeline.configure(props);
+
+        xformPipeline.apply(new SinkRecord("test", 0, null, null, schema, value(), 0));
+    }
+
+    @Test (expected = ConfigException.class)
+    public void unknownOperationType() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("pipeline", "cast");
+        props.put("pipeline.cast.type", "cast");
+
+        xformPipeline.configure(props);
+    }
+
+    private static List<String> fieldNames(Schema schema) {
+        final List<String> names = new ArrayList<>();
+        for (Field field : schema.fields()) {
+            names.add(field.name());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class KeyToValueTest {
+
+    private KeyToValue<SinkRecord> xformKeyToValue = new KeyToValue<>();
+
+    private final Schema schema = SchemaBuilder.struct().name("Person")
+            .field("first_name", Schema.STRING_SCHEMA)
+            .field("address_number", Schema.OPTIONAL_INT32_SCHEMA)
+            .build();
+
+    @After
+    public void teardown() {
+        xformKeyToValue.close();
+    }
+
+    @Test
+    public void keyToValue() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "record_key");
+
+        xformKeyToValue.configure(props);
+
+        final Struct value = new Struct(schema).put("first_name", "whatever").put("address_number", 123);
+        final SinkRecord record = new SinkRecord("test", 0, Schema.INT64_SCHEMA, 42L, schema, value, 0);
+        final SinkRecord transformedRecord = xformKeyToValue.apply(record);
+
+        final Struct updatedValue = (Struct) transformedRecord.value();
+        assertEquals("Person", transformedRecord.valueSchema().name());
+        assertEquals(3, transformedRecord.valueSchema().fields().size());
+        assertEquals("whatever", updatedValue.getString("first_name"));
+        assertEquals(123, updatedValue.getInt32("address_number").intValue());
+        assertEquals("42", updatedValue.getString("record_key"));
+        assertEquals(42L, transformedRecord.key());
+    }
+
+    @Test
+    public void nullKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "record_key");
+
+        xformKeyToValue.configure(props);
+
+        final SinkRecord record = new SinkRecord("test", 0, null, null, schema, new Struct(schema).put("first_name", "whatever"), 0);
+        final Struct updatedValue = (Struct) xformKeyToValue.apply(record).value();
+
+        assertEquals("", updatedValue.getString("record_key"));
+        assertNull(updatedValue.getInt32("address_number"));
+    }
+
+    @Test
+    public void schemaReused() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "record_key");
+
+        xformKeyToValue.configure(props);
+
+        final Schema equalSchema = SchemaBuilder.struct().name("Person")
+                .field("first_name", Schema.STRING_SCHEMA)
+                .field("address_number", Schema.OPTIONAL_INT32_SCHEMA)
+                .build();
+        final Schema otherSchema = SchemaBuilder.struct().name("Other").field("last_name", Schema.STRING_SCHEMA).build();
+
+        final Schema updatedSchema = xformKeyToValue.apply(new SinkRecord("test", 0, null, "key", schema,
+                new Struct(schema).put("first_name", "whatever"), 0)).valueSchema();
+        final SinkRecord otherRecord = xformKeyToValue.apply(new SinkRecord("test", 0, null, "key", otherSchema,
+                new Struct(otherSchema).put("last_name", "whatever"), 0));
+        final Schema equalUpdatedSchema = xformKeyToValue.apply(new SinkRecord("test", 0, null, "key", equalSchema,
+                new Struct(equalSchema).put("first_name", "whatever"), 0)).valueSchema();
+
+        assertSame(updatedSchema, equalUpdatedSchema);
+        assertSame(otherRecord.valueSchema(), xformKeyToValue.apply(new SinkRecord("test", 0, null, "key", otherSchema,
+                new Struct(otherSchema).put("last_name", "whatever"), 0)).valueSchema());
+        assertEquals("whatever", ((Struct) otherRecord.value()).getString("last_name"));
+        assertEquals("key", ((Struct) otherRecord.value()).getString("record_key"));
+    }
+
+    @Test
+    public void typedKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "record_key");
+        props.put("key.embed", "typed");
+
+        xformKeyToValue.configure(props);
+
+        final Struct value = new Struct(schema).put("first_name", "whatever");
+        final Struct updatedValue = (Struct) xformKeyToValue.apply(new SinkRecord("test", 0, Schema.INT64_SCHEMA, 42L, schema, value, 0)).value();
+        assertEquals(Schema.OPTIONAL_INT64_SCHEMA, updatedValue.schema().field("record_key").schema());
+        assertEquals(42L, updatedValue.get("record_key"));
+
+        final Schema keySchema = SchemaBuilder.struct().name("PersonKey").field("id", Schema.INT32_SCHEMA).build();
+        final Struct key = new Struct(keySchema).put("id", 7);
+        final Struct updatedStructValue = (Struct) xformKeyToValue.apply(new SinkRecord("test", 0, keySchema, key, schema, value, 0)).value();
+        final Schema keyFieldSchema = updatedStructValue.schema().field("record_key").schema();
+        assertTrue(keyFieldSchema.isOptional());
+        assertEquals("PersonKey", keyFieldSchema.name());
+        assertEquals(7, updatedStructValue.getStruct("record_key").get("id"));
+
+        final Schema optionalKeySchema = SchemaBuilder.struct().name("PersonKey").field("id", Schema.INT32_SCHEMA).optional().build();
+        final Struct optionalKey = new Struct(optionalKeySchema).put("id", 7);
+        assertSame(optionalKey, ((Struct) xformKeyToValue.apply(new SinkRecord("test", 0, optionalKeySchema, optionalKey, schema, value, 0)).value()).get("record_key"));
+    }
+
+    @Test
+    public void typedNullKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "record_key");
+        props.put("key.embed", "typed");
+
+        xformKeyToValue.configure(props);
+
+        final Struct value = new Struct(schema).put("first_name", "whatever");
+        final Struct updatedValue = (Struct) xformKeyToValue.apply(new SinkRecord("test", 0, Schema.INT64_SCHEMA, null, schema, value, 0)).value();
+        assertNull(updatedValue.get("record_key"));
+        assertEquals("whatever", updatedValue.get("first_name"));
+
+        final Schema keySchema = SchemaBuilder.struct().name("PersonKey").field("id", Schema.INT32_SCHEMA).build();
+        final Struct updatedStructValue = (Struct) xformKeyToValue.apply(new SinkRecord("test", 0, keySchema, null, schema, value, 0)).value();
+        assertNull(updatedStructValue.get("record_key"));
+    }
+
+    @Test
+    public void flattenedKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "key");
+        props.put("key.embed", "flatten");
+        props.put("key.flatten.delimiter", "_");
+
+        xformKeyToValue.configure(props);
+
+        final Schema tenantSchema = SchemaBuilder.struct().field("id", Schema.STRING_SCHEMA).field("region", Schema.STRING_SCHEMA).build();
+        final Schema keySchema = SchemaBuilder.struct()
+                .field("order_id", Schema.INT64_SCHEMA)
+                .field("tenant", tenantSchema)
+                .build();
+        final Struct key = new Struct(keySchema)
+                .put("order_id", 1001L)
+                .put("tenant", new Struct(tenantSchema).put("id", "acme").put("region", "eu"));
+        final Struct value = new Struct(schema).put("first_name", "whatever");
+
+        final Struct updatedValue = (Struct) xformKeyToValue.apply(new SinkRecord("test", 0, keySchema, key, schema, value, 0)).value();
+        assertEquals(Arrays.asList("first_name", "address_number", "key_order_id", "key_tenant_id", "key_tenant_region"),
+                fieldNames(updatedValue.schema()));
+        assertEquals(1001L, updatedValue.get("key_order_id"));
+        assertEquals("acme", updatedValue.get("key_tenant_id"));
+        assertEquals("eu", updatedValue.get("key_tenant_region"));
+        assertTrue(updatedValue.schema().field("key_order_id").schema().isOptional());
+
+        final Struct nullKeyValue = (Struct) xformKeyToValue.apply(new SinkRecord("test", 0, keySchema, null, schema, value, 0)).value();
+        assertNull(nullKeyValue.get("key_order_id"));
+        assertNull(nullKeyValue.get("key_tenant_region"));
+    }
+
+    @Test (expected = DataException.class)
+    public void typedKeyWithoutSchema() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "record_key");
+        props.put("key.embed", "typed");
+
+        xformKeyToValue.configure(props);
+
+        xformKeyToValue.apply(new SinkRecord("test", 0, null, "key", schema, new Struct(schema).put("first_name", "whatever"), 0));
+    }
+
+    @Test
+    public void schemaless() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "record_key");
+
+        xformKeyToValue.configure(props);
+
+        final Map<String, Object> value = new HashMap<>();
+        value.put("first_name", "whatever");
+        final SinkRecord transformedRecord = xformKeyToValue.apply(new SinkRecord("test", 0, null, 42L, null, value, 0));
+
+        final HashMap<?, ?> updatedValue = (HashMap<?, ?>) transformedRecord.value();
+        assertNull(transformedRecord.valueSchema());
+        assertNotSame(value, updatedValue);
+        assertEquals(1, value.size());
+        assertEquals("whatever", updatedValue.get("first_name"));
+        assertEquals("42", updatedValue.get("record_key"));
+    }
+
+    @Test
+    public void schemalessInPlace() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "record_key");
+        props.put("key.embed", "typed");
+        props.put("schemaless.in.place", "true");
+
+        xformKeyToValue.configure(props);
+
+        final Map<String, Object> value = new HashMap<>();
+        value.put("first_name", "whatever");
+        final Object updatedValue = xformKeyToValue.apply(new SinkRecord("test", 0, null, 42L, null, value, 0)).value();
+
+        assertSame(value, updatedValue);
+        assertEquals(42L, value.get("record_key"));
+
+        final Map<String, Object> immutableValue = Collections.singletonMap("first_name", "whatever");
+        final Map<?, ?> copiedValue = (Map<?, ?>) xformKeyToValue.apply(new SinkRecord("test", 0, null, 42L, null, immutableValue, 0)).value();
+        assertEquals(42L, copiedValue.get("record_key"));
+    }
+
+    @Test
+    public void schemalessFlattenedKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "key");
+        props.put("key.embed", "flatten");
+
+        xformKeyToValue.configure(props);
+
+        final Map<String, Object> key = new HashMap<>();
+        key.put("order_id", 1001L);
+        key.put("tenant", Collections.singletonMap("id", "acme"));
+        final Map<?, ?> updatedValue = (Map<?, ?>) xformKeyToValue.apply(new SinkRecord("test", 0, null, key, null,
+                Collections.singletonMap("first_name", "whatever"), 0)).value();
+
+        assertEquals(3, updatedValue.size());
+        assertEquals(1001L, updatedValue.get("key.order_id"));
+        assertEquals("acme", updatedValue.get("key.tenant.id"));
+    }
+
+    @Test
+    public void projectedKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.fields", "tenant.id:tenant_id,order_id");
+
+        xformKeyToValue.configure(props);
+
+        final Schema tenantSchema = SchemaBuilder.struct().field("id", Schema.STRING_SCHEMA).field("region", Schema.STRING_SCHEMA).build();
+        final Schema keySchema = SchemaBuilder.struct()
+                .field("order_id", Schema.INT64_SCHEMA)
+                .field("tenant", tenantSchema)
+                .build();
+        final Struct key = new Struct(keySchema)
+                .put("order_id", 1001L)
+                .put("tenant", new Struct(tenantSchema).put("id", "acme").put("region", "eu"));
+        final Struct value = new Struct(schema).put("first_name", "whatever");
+
+        final Struct updatedValue = (Struct) xformKeyToValue.apply(new SinkRecord("test", 0, keySchema, key, schema, value, 0)).value();
+        assertEquals(Arrays.asList("first_name", "address_number", "tenant_id", "order_id"), fieldNames(updatedValue.schema()));
+        assertEquals("acme", updatedValue.get("tenant_id"));
+        assertEquals(1001L, updatedValue.get("order_id"));
+        assertTrue(updatedValue.schema().field("tenant_id").schema().isOptional());
+    }
+
+    @Test
+    public void projectedStructOptional() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.fields", "tenant,regions");
+
+        xformKeyToValue.configure(props);
+
+        final Schema tenantSchema = SchemaBuilder.struct().name("Tenant").field("id", Schema.STRING_SCHEMA).build();
+        final Schema keySchema = SchemaBuilder.struct()
+                .field("tenant", tenantSchema)
+                .field("regions", SchemaBuilder.array(Schema.STRING_SCHEMA).build())
+                .build();
+        final Struct key = new Struct(keySchema)
+                .put("tenant", new Struct(tenantSchema).put("id", "acme"))
+                .put("regions", Collections.singletonList("eu"));
+        final Struct value = new Struct(schema).put("first_name", "whatever");
+
+        final Struct updatedValue = (Struct) xformKeyToValue.apply(new SinkRecord("test", 0, keySchema, key, schema, value, 0)).value();
+        assertTrue(updatedValue.schema().field("tenant").schema().isOptional());
+        assertEquals("Tenant", updatedValue.schema().field("tenant").schema().name());
+        assertTrue(updatedValue.schema().field("regions").schema().isOptional());
+        assertEquals("acme", updatedValue.getStruct("tenant").getString("id"));
+        assertEquals(Collections.singletonList("eu"), updatedValue.getArray("regions"));
+
+        final Struct nullKeyValue = (Struct) xformKeyToValue.apply(new SinkRecord("test", 0, keySchema, null, schema, value, 0)).value();
+        assertNull(nullKeyValue.get("tenant"));
+        assertNull(nullKeyValue.get("regions"));
+    }
+
+    @Test (expected = DataException.class)
+    public void projectedKeyMissingField() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.fields", "tenant.name");
+
+        xformKeyToValue.configure(props);
+
+        final Schema keySchema = SchemaBuilder.struct().field("tenant", Schema.STRING_SCHEMA).build();
+        xformKeyToValue.apply(new SinkRecord("test", 0, keySchema, new Struct(keySchema).put("tenant", "acme"), schema,
+                new Struct(schema).put("first_name", "whatever"), 0));
+    }
+
+    @Test (expected = ConfigException.class)
+    public void keyFieldNameAndKeyFields() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.field.name", "record_key");
+        props.put("key.fields", "order_id");
+
+        xformKeyToValue.configure(props);
+    }
+
+    @Test
+    public void schemalessProjectedKey() {
+        final Map<String, String> props = new HashMap<>();
+        props.put("key.fields", "tenant.id:tenant_id,order_id");
+
+        xformKeyToValue.configure(props);
+
+        final Map<String, Object> key = new HashMap<>();
+        key.put("order_id", 1001L);
+        key.put("tenant", Collections.singletonMap("id", "acme"));
+        final Map<?, ?> updatedValue = (Map<?, ?>) xformKeyToValue.apply(new SinkRecord("test", 0, null, key, null,
+                Collections.singletonMap("first_name", "whatever"), 0)).value();
+
+        assertEquals(3, updatedValue.size());
+        assertEquals("acme", updatedValue.get("tenant_id"));
+        assertEquals(1001L, updatedValue.get("order_id"));
+    }
+
+    private static List<String> fieldNames(Schema schema) {
+        final List<String> names = new ArrayList<>();
+        for (Field field : schema.fields()) {
+            names.add(field.name());
+        }
+        return names;
+    }
+}
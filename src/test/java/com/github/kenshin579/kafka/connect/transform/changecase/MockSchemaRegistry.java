@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kenshin579.kafka.connect.transform.changecase;
+
+import org.apache.avro.Schema;
+import org.apache.kafka.connect.errors.DataException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process schema registry stand-in for tests, handed to the transform after configure.
+ */
+final class MockSchemaRegistry implements SchemaRegistry {
+    private final Map<Integer, Schema> schemas = new HashMap<>();
+    private final Map<Schema, Integer> ids = new HashMap<>();
+    private final Map<String, List<Integer>> subjects = new HashMap<>();
+
+    @Override
+    public synchronized Schema getById(int id) {
+        final Schema schema = schemas.get(id);
+        if (schema == null) {
+            throw new DataException("Schema " + id + " not found");
+        }
+        return schema;
+    }
+
+    @Override
+    public synchronized int register(String subject, Schema schema) {
+        Integer id = ids.get(schema);
+        if (id == null) {
+            id = schemas.size() + 1;
+            schemas.put(id, schema);
+            ids.put(schema, id);
+        }
+        final List<Integer> versions = subjects.computeIfAbsent(subject, s -> new ArrayList<>());
+        if (!versions.contains(id)) {
+            versions.add(id);
+        }
+        return id;
+    }
+
+    synchronized List<Integer> versions(String subject) {
+        final List<Integer> versions = subjects.get(subject);
+        return versions == null ? Collections.emptyList() : new ArrayList<>(versions);
+    }
+}